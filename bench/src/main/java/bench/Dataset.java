@@ -0,0 +1,90 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Synthetic roster written in the tracker's CSV formats. Students get ids [0, students), events
+// the ids after them; every student is registered for REGISTRATIONS_PER_STUDENT random events.
+// The last CHURN_EVENTS events are left without attendees for the register/dropoff benchmarks.
+final class Dataset {
+    static final String[] QUARTERS = {"2023Q1", "2023Q2", "2023Q3", "2023Q4"};
+    static final int REGISTRATIONS_PER_STUDENT = 5;
+    static final int CHURN_EVENTS = 64;
+
+    final Path dir;
+    final int students;
+    final int events;
+
+    private Dataset(Path dir, int students, int events) {
+        this.dir = dir;
+        this.students = students;
+        this.events = events;
+    }
+
+    static Dataset create(int students) throws IOException {
+        Path dir = Files.createTempDirectory("tracker-bench");
+        int events = Math.max(students / 20, 50) + CHURN_EVENTS;
+        Dataset dataset = new Dataset(dir, students, events);
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("student"))) {
+            for (int i = 0; i < students; i++) {
+                writer.write(i + "," + studentName(i) + "," + (2024 + i % 4));
+                writer.newLine();
+            }
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("event"))) {
+            for (int i = 0; i < events; i++) {
+                writer.write(dataset.eventId(i) + ",Event" + i + "," + (1 + random.nextInt(10)) + "," + QUARTERS[i % QUARTERS.length]);
+                writer.newLine();
+            }
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("participation"))) {
+            int regular = events - CHURN_EVENTS;
+            for (int i = 0; i < students; i++) {
+                for (int r = 0; r < REGISTRATIONS_PER_STUDENT; r++) {
+                    writer.write(i + "," + dataset.eventId(random.nextInt(regular)));
+                    writer.newLine();
+                }
+            }
+        }
+        return dataset;
+    }
+
+    // An empty data directory, for trackers that load files by hand
+    static Path createEmpty() throws IOException {
+        Path dir = Files.createTempDirectory("tracker-bench-empty");
+        for (String file : new String[]{"student", "event", "participation"}) {
+            Files.createFile(dir.resolve(file));
+        }
+        return dir;
+    }
+
+    static String studentName(int id) {
+        return "Student" + id;
+    }
+
+    int eventId(int index) {
+        return students + index;
+    }
+
+    int churnEventId(int index) {
+        return eventId(events - CHURN_EVENTS + index);
+    }
+
+    String file(String name) {
+        return dir.resolve(name).toString();
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+// Cold loads of the CSV snapshot files into a tracker that starts out empty. Each invocation gets
+// a fresh tracker; loadParticipations gets one that already holds the students and events.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class LoadBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int students;
+
+    private Dataset dataset;
+    private Path emptyDir;
+    private Tracker tracker;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        dataset = Dataset.create(students);
+        emptyDir = Dataset.createEmpty();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        Dataset.delete(dataset.dir);
+        Dataset.delete(emptyDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void newTracker(BenchmarkParams params) throws Throwable {
+        tracker = new Tracker(emptyDir.toString());
+        if (params.getBenchmark().endsWith("loadParticipations")) {
+            tracker.loadStudents(dataset.file("student"));
+            tracker.loadEvents(dataset.file("event"));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeTracker() throws Throwable {
+        tracker.close();
+    }
+
+    @Benchmark
+    public void loadStudents() throws Throwable {
+        tracker.loadStudents(dataset.file("student"));
+    }
+
+    @Benchmark
+    public void loadEvents() throws Throwable {
+        tracker.loadEvents(dataset.file("event"));
+    }
+
+    @Benchmark
+    public void loadParticipations() throws Throwable {
+        tracker.loadParticipations(dataset.file("participation"));
+    }
+}
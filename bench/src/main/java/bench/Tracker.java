@@ -0,0 +1,111 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// The application lives in the unnamed package, which named packages cannot import, and JMH
+// refuses benchmarks outside a named package. The tracker is therefore reached through method
+// handles held in static finals, which the JIT inlines like ordinary calls.
+final class Tracker {
+    private static final Class<?> TRACKER;
+    private static final MethodHandle NEW;
+    private static final MethodHandle REGISTER;
+    private static final MethodHandle DROPOFF;
+    private static final MethodHandle TOTAL_POINTS;
+    private static final MethodHandle QUARTERLY_REPORT;
+    private static final MethodHandle TOP_STUDENT;
+    private static final MethodHandle ID_BY_NAME;
+    private static final MethodHandle CLOSE;
+    private static final MethodHandle AWAIT_COMPACTION;
+    private static final MethodHandle LOAD_STUDENTS;
+    private static final MethodHandle LOAD_EVENTS;
+    private static final MethodHandle LOAD_PARTICIPATIONS;
+
+    static {
+        try {
+            TRACKER = Class.forName("StudentTracker");
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandles.Lookup privateLookup = MethodHandles.privateLookupIn(TRACKER, lookup);
+            NEW = generic(lookup.findConstructor(TRACKER, MethodType.methodType(void.class, String.class)));
+            REGISTER = generic(lookup.findVirtual(TRACKER, "register", MethodType.methodType(void.class, int.class, int.class)));
+            DROPOFF = generic(lookup.findVirtual(TRACKER, "dropoff", MethodType.methodType(void.class, int.class, int.class)));
+            TOTAL_POINTS = generic(lookup.findVirtual(TRACKER, "totalPoints", MethodType.methodType(int.class, int.class)));
+            QUARTERLY_REPORT = generic(lookup.findVirtual(TRACKER, "getQuarterlyPersonReport",
+                    MethodType.methodType(int.class, String.class, int.class)));
+            TOP_STUDENT = generic(lookup.findVirtual(TRACKER, "getTopStudentOfQuarter",
+                    MethodType.methodType(Class.forName("Student"), String.class)));
+            ID_BY_NAME = generic(lookup.findVirtual(TRACKER, "getIdBasedOnName", MethodType.methodType(int.class, String.class)));
+            CLOSE = generic(lookup.findVirtual(TRACKER, "close", MethodType.methodType(void.class)));
+            MethodType load = MethodType.methodType(void.class, String.class);
+            LOAD_STUDENTS = generic(privateLookup.findVirtual(TRACKER, "loadStudents", load));
+            LOAD_EVENTS = generic(privateLookup.findVirtual(TRACKER, "loadEvents", load));
+            LOAD_PARTICIPATIONS = generic(privateLookup.findVirtual(TRACKER, "loadParticipations", load));
+            AWAIT_COMPACTION = generic(privateLookup.findVirtual(TRACKER, "awaitCompaction", MethodType.methodType(void.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object tracker;
+
+    Tracker(String dataDir) throws Throwable {
+        tracker = (Object) NEW.invokeExact(dataDir);
+    }
+
+    void register(int studentId, int eventId) throws Throwable {
+        REGISTER.invokeExact(tracker, studentId, eventId);
+    }
+
+    void dropoff(int studentId, int eventId) throws Throwable {
+        DROPOFF.invokeExact(tracker, studentId, eventId);
+    }
+
+    int totalPoints(int studentId) throws Throwable {
+        return (int) TOTAL_POINTS.invokeExact(tracker, studentId);
+    }
+
+    int getQuarterlyPersonReport(String quarter, int studentId) throws Throwable {
+        return (int) QUARTERLY_REPORT.invokeExact(tracker, quarter, studentId);
+    }
+
+    Object getTopStudentOfQuarter(String quarter) throws Throwable {
+        return (Object) TOP_STUDENT.invokeExact(tracker, quarter);
+    }
+
+    int getIdBasedOnName(String name) throws Throwable {
+        return (int) ID_BY_NAME.invokeExact(tracker, name);
+    }
+
+    void loadStudents(String fileName) throws Throwable {
+        LOAD_STUDENTS.invokeExact(tracker, fileName);
+    }
+
+    void loadEvents(String fileName) throws Throwable {
+        LOAD_EVENTS.invokeExact(tracker, fileName);
+    }
+
+    void loadParticipations(String fileName) throws Throwable {
+        LOAD_PARTICIPATIONS.invokeExact(tracker, fileName);
+    }
+
+    // Lets a running compaction finish first, so the data directory can be deleted afterwards
+    void close() throws Throwable {
+        AWAIT_COMPACTION.invokeExact(tracker);
+        CLOSE.invokeExact(tracker);
+    }
+
+    // Replaces the tracker and Student types in a handle's signature with Object
+    private static MethodHandle generic(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (type.parameterType(i) == TRACKER) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (!type.returnType().isPrimitive()) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+}
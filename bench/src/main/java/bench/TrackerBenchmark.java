@@ -0,0 +1,131 @@
+package bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Mutation and query paths of a tracker loaded with a synthetic roster. The register and dropoff
+// benchmarks walk a pool of pairs on events nobody attends, so every call changes state. A
+// time-bound iteration would run past the end of the pool and go on measuring no-op duplicates,
+// so those two run as single shots: each iteration makes exactly one call per pair, and the
+// pool is restored between iterations.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class TrackerBenchmark {
+    // Pairs in the pool, and calls per register or dropoff iteration; the smallest roster has
+    // students * CHURN_EVENTS = 64k pairs to choose from
+    private static final int PAIR_POOL = 50_000;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int students;
+
+    private Dataset dataset;
+    private Tracker tracker;
+    private int[] pairStudents;
+    private int[] pairEvents;
+    private int nextPair;
+    private boolean pairsRegistered;
+    // Built up front so name lookups are not measured together with string concatenation
+    private String[] names;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        dataset = Dataset.create(students);
+        tracker = new Tracker(dataset.dir.toString());
+        // Pairs run through all students for one churn event, then move to the next event
+        if (students * Dataset.CHURN_EVENTS < PAIR_POOL) {
+            throw new IllegalArgumentException("Too few students for a pool of " + PAIR_POOL + " pairs");
+        }
+        pairStudents = new int[PAIR_POOL];
+        pairEvents = new int[PAIR_POOL];
+        for (int i = 0; i < PAIR_POOL; i++) {
+            pairStudents[i] = i % students;
+            pairEvents[i] = dataset.churnEventId(i / students);
+        }
+        names = new String[students];
+        for (int i = 0; i < students; i++) {
+            names[i] = Dataset.studentName(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        tracker.close();
+        Dataset.delete(dataset.dir);
+    }
+
+    // Undoes whatever the previous iteration's register or dropoff calls did
+    @TearDown(Level.Iteration)
+    public void resetPairs() throws Throwable {
+        for (int i = 0; i < nextPair; i++) {
+            if (pairsRegistered) {
+                tracker.register(pairStudents[i], pairEvents[i]);
+            } else {
+                tracker.dropoff(pairStudents[i], pairEvents[i]);
+            }
+        }
+        nextPair = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @OperationsPerInvocation(PAIR_POOL)
+    public void register() throws Throwable {
+        pairsRegistered = false;
+        for (int i = 0; i < PAIR_POOL; i++) {
+            tracker.register(pairStudents[i], pairEvents[i]);
+        }
+        nextPair = PAIR_POOL;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @OperationsPerInvocation(PAIR_POOL)
+    public void dropoff(PairsRegistered state) throws Throwable {
+        pairsRegistered = true;
+        for (int i = 0; i < PAIR_POOL; i++) {
+            tracker.dropoff(pairStudents[i], pairEvents[i]);
+        }
+        nextPair = PAIR_POOL;
+    }
+
+    @Benchmark
+    public int totalPoints() throws Throwable {
+        return tracker.totalPoints(random.nextInt(students));
+    }
+
+    @Benchmark
+    public int getQuarterlyPersonReport() throws Throwable {
+        return tracker.getQuarterlyPersonReport(Dataset.QUARTERS[random.nextInt(Dataset.QUARTERS.length)], random.nextInt(students));
+    }
+
+    @Benchmark
+    public Object getTopStudentOfQuarter() throws Throwable {
+        return tracker.getTopStudentOfQuarter(Dataset.QUARTERS[random.nextInt(Dataset.QUARTERS.length)]);
+    }
+
+    @Benchmark
+    public int getIdBasedOnName() throws Throwable {
+        return tracker.getIdBasedOnName(names[random.nextInt(students)]);
+    }
+
+    // Registers the whole pair pool once before the dropoff benchmark starts removing it
+    @State(Scope.Benchmark)
+    public static class PairsRegistered {
+        @Setup(Level.Trial)
+        public void setUp(TrackerBenchmark benchmark) throws Throwable {
+            for (int i = 0; i < benchmark.pairStudents.length; i++) {
+                benchmark.tracker.register(benchmark.pairStudents[i], benchmark.pairEvents[i]);
+            }
+        }
+    }
+}
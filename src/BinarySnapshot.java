@@ -0,0 +1,197 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Compact alternative to the three CSV snapshot files. Layout, all ints big-endian:
+//   header        MAGIC, VERSION, generation (a long), studentCount, eventCount, registrationCount,
+//                 stringCount
+//   students      studentCount x (id, name string, classYear)
+//   events        eventCount x (id, name string, points, duration string)
+//   participation registrationCount x (studentId, eventId)
+//   strings       (stringCount + 1) byte offsets into the UTF-8 blob that follows
+//   checksum      CRC32 of everything before it
+// Strings are interned, so each distinct duration is stored and decoded once. Loading maps
+// the file and walks the fixed-width records in place; the checksum is checked by verify().
+public class BinarySnapshot {
+    private static final int MAGIC = 0x53505331; // "SPS1"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES + Long.BYTES;
+
+    public interface Sink {
+        void student(int id, String name, int classYear);
+
+        void event(int id, String name, int points, String duration);
+
+        void registration(int studentId, int eventId);
+    }
+
+    // The snapshot's generation if it is intact, otherwise what is wrong with it; for SnapshotFiles.choose
+    public static SnapshotFiles.Generation verify(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            String problem = checkHeader(buffer);
+            if (problem == null) {
+                problem = checkSum(buffer);
+            }
+            return problem == null ? SnapshotFiles.Generation.intact(buffer.getLong(8)) : SnapshotFiles.Generation.damaged(problem);
+        }
+    }
+
+    private static String checkHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            return "not a participation snapshot";
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            return "of unsupported version " + version;
+        }
+        if (buffer.remaining() < HEADER_BYTES + Integer.BYTES) {
+            return "truncated";
+        }
+        return null;
+    }
+
+    private static String checkSum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, buffer.limit() - Integer.BYTES));
+        return (int) crc.getValue() == buffer.getInt(buffer.limit() - Integer.BYTES) ? null : "damaged (checksum mismatch)";
+    }
+
+    // Walks a snapshot that verify() has passed, as SnapshotFiles.choose does at startup, so the
+    // checksum is not computed a second time; only the header is checked again
+    public static void read(String fileName, Sink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            String problem = checkHeader(buffer);
+            if (problem != null) {
+                throw new IOException("Snapshot " + fileName + " is " + problem);
+            }
+            int studentCount = buffer.getInt(16);
+            int eventCount = buffer.getInt(20);
+            int registrationCount = buffer.getInt(24);
+            int stringCount = buffer.getInt(28);
+
+            int studentBase = HEADER_BYTES;
+            int eventBase = studentBase + studentCount * 3 * Integer.BYTES;
+            int registrationBase = eventBase + eventCount * 4 * Integer.BYTES;
+            int stringBase = registrationBase + registrationCount * 2 * Integer.BYTES;
+            String[] strings = readStrings(buffer, stringBase, stringCount);
+
+            for (int i = 0, pos = studentBase; i < studentCount; i++, pos += 3 * Integer.BYTES) {
+                sink.student(buffer.getInt(pos), strings[buffer.getInt(pos + 4)], buffer.getInt(pos + 8));
+            }
+            for (int i = 0, pos = eventBase; i < eventCount; i++, pos += 4 * Integer.BYTES) {
+                sink.event(buffer.getInt(pos), strings[buffer.getInt(pos + 4)], buffer.getInt(pos + 8),
+                        strings[buffer.getInt(pos + 12)]);
+            }
+            for (int i = 0, pos = registrationBase; i < registrationCount; i++, pos += 2 * Integer.BYTES) {
+                sink.registration(buffer.getInt(pos), buffer.getInt(pos + 4));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated snapshot: " + fileName, e);
+        }
+    }
+
+    public static void write(String fileName, long generation, Collection<Student> students,
+                             Collection<Events> events, IntObjectMap<IntSet> registration) throws IOException {
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        for (Student student : students) {
+            stringIds.putIfAbsent(student.getName(), stringIds.size());
+        }
+        for (Events event : events) {
+            stringIds.putIfAbsent(event.getName(), stringIds.size());
+            stringIds.putIfAbsent(event.getDuration(), stringIds.size());
+        }
+        List<byte[]> encoded = new ArrayList<>(stringIds.size());
+        int blobBytes = 0;
+        for (String string : stringIds.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            blobBytes += bytes.length;
+        }
+        int[] registrationCount = new int[1];
+        registration.forEach((studentId, eventSet) -> registrationCount[0] += eventSet.size());
+
+        long size = HEADER_BYTES
+                + (long) students.size() * 3 * Integer.BYTES
+                + (long) events.size() * 4 * Integer.BYTES
+                + (long) registrationCount[0] * 2 * Integer.BYTES
+                + (long) (encoded.size() + 1) * Integer.BYTES
+                + blobBytes
+                + Integer.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large for a single mapping: " + size + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(generation)
+                .putInt(students.size()).putInt(events.size()).putInt(registrationCount[0]).putInt(encoded.size());
+        for (Student student : students) {
+            buffer.putInt(student.getId()).putInt(stringIds.get(student.getName())).putInt(student.getClassYear());
+        }
+        for (Events event : events) {
+            buffer.putInt(event.getId()).putInt(stringIds.get(event.getName()))
+                    .putInt(event.getPoints()).putInt(stringIds.get(event.getDuration()));
+        }
+        registration.forEach((studentId, eventSet) -> eventSet.forEach(eventId -> buffer.putInt(studentId).putInt(eventId)));
+        int offset = 0;
+        for (byte[] bytes : encoded) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] bytes : encoded) {
+            buffer.put(bytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Path tempFile = SnapshotFiles.temp(fileName);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        SnapshotFiles.replace(tempFile, fileName);
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int base, int count) {
+        String[] strings = new String[count];
+        int blobBase = base + (count + 1) * Integer.BYTES;
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < count; i++) {
+            int start = buffer.getInt(base + i * Integer.BYTES);
+            int length = buffer.getInt(base + (i + 1) * Integer.BYTES) - start;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(blobBase + start, scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // Converts the tracker's data directory between the CSV files and the binary snapshot:
+    //   java BinarySnapshot to-binary   writes data/snapshot; the tracker prefers it from then on
+    //   java BinarySnapshot to-csv      rewrites data/student, data/event, data/participation
+    //                                   and removes data/snapshot
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 || !(args[0].equals("to-binary") || args[0].equals("to-csv"))) {
+            System.err.println("Usage: BinarySnapshot to-binary|to-csv");
+            System.exit(2);
+        }
+        StudentTracker tracker = new StudentTracker();
+        try {
+            tracker.convertSnapshot(args[0].equals("to-binary"));
+        } finally {
+            tracker.close();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.Arrays;
+
+// Column-oriented copy of the numbers the reports aggregate. Students and events each get a dense
+// row number, and every field is a parallel int array indexed by it, so a rollup over all students
+// is a scan of a few arrays rather than a walk over map entries and heap objects. Point totals are
+// kept per student overall and per quarter key, one array per quarter, next to the number of the
+// student's registrations in the quarter. ReportEngine scans a copy of the store when it is enabled.
+//
+// The Student and Events objects stay the tracker's view of a single record; this store mirrors
+// their numeric fields and is kept in step by the tracker. Rows are added and removed only while
+// the tracker holds its structure write lock; a removed row is filled with the last row. Points
+// are credited under the student's stripe lock, so concurrent writers touch different rows.
+public class ColumnStore {
+    private static final int MIN_CAPACITY = 16;
+
+    // id -> row + 1, so a missing id reads as -1 through row()
+    private final IntIntMap studentRows = new IntIntMap();
+    private int[] studentIds = new int[MIN_CAPACITY];
+    private int[] classYears = new int[MIN_CAPACITY];
+    private int[] totals = new int[MIN_CAPACITY];
+    // quarter key -> points per student row; null for a quarter nobody registered in yet
+    private volatile int[][] quarterPoints = new int[0][];
+    // quarter key -> registrations per student row, set up together with quarterPoints
+    private volatile int[][] quarterRegistrations = new int[0][];
+    private volatile int studentCount;
+
+    private final IntIntMap eventRows = new IntIntMap();
+    private int[] eventIds = new int[MIN_CAPACITY];
+    private int[] eventPoints = new int[MIN_CAPACITY];
+    private int[] eventQuarters = new int[MIN_CAPACITY];
+    private volatile int eventCount;
+
+    // ------------------ Students ------------------
+
+    public int studentCount() {
+        return studentCount;
+    }
+
+    public int studentRow(int studentId) {
+        return studentRows.get(studentId) - 1;
+    }
+
+    public int studentId(int row) {
+        return studentIds[row];
+    }
+
+    public int classYear(int row) {
+        return classYears[row];
+    }
+
+    public int total(int row) {
+        return totals[row];
+    }
+
+    // Points the student in the row earned in the quarter
+    public int quarterPoints(int row, int quarter) {
+        int[][] columns = quarterPoints;
+        return quarter < columns.length && columns[quarter] != null ? columns[quarter][row] : 0;
+    }
+
+    // Number of events of the quarter the student in the row is registered for
+    public int quarterRegistrations(int row, int quarter) {
+        int[][] columns = quarterRegistrations;
+        return quarter < columns.length && columns[quarter] != null ? columns[quarter][row] : 0;
+    }
+
+    public void addStudent(int studentId, int classYear) {
+        if (studentRow(studentId) >= 0) {
+            setClassYear(studentId, classYear);
+            return;
+        }
+        int row = studentCount;
+        if (row == studentIds.length) {
+            growStudents(row * 2);
+        }
+        studentIds[row] = studentId;
+        classYears[row] = classYear;
+        totals[row] = 0;
+        for (int[][] columns : new int[][][]{quarterPoints, quarterRegistrations}) {
+            for (int[] column : columns) {
+                if (column != null) {
+                    column[row] = 0;
+                }
+            }
+        }
+        studentRows.put(studentId, row + 1);
+        studentCount = row + 1;
+    }
+
+    public void removeStudent(int studentId) {
+        int row = studentRow(studentId);
+        if (row < 0) {
+            return;
+        }
+        int last = studentCount - 1;
+        if (row != last) {
+            studentIds[row] = studentIds[last];
+            classYears[row] = classYears[last];
+            totals[row] = totals[last];
+            for (int[][] columns : new int[][][]{quarterPoints, quarterRegistrations}) {
+                for (int[] column : columns) {
+                    if (column != null) {
+                        column[row] = column[last];
+                    }
+                }
+            }
+            studentRows.put(studentIds[row], row + 1);
+        }
+        studentRows.remove(studentId);
+        studentCount = last;
+    }
+
+    public void setClassYear(int studentId, int classYear) {
+        int row = studentRow(studentId);
+        if (row >= 0) {
+            classYears[row] = classYear;
+        }
+    }
+
+    // Adds points to the student's total and to its points in the quarter, and registrations (1
+    // for a registration, -1 for a dropoff) to its count for the quarter
+    public void credit(int studentId, int quarter, int points, int registrations) {
+        int row = studentRow(studentId);
+        if (row < 0) {
+            return;
+        }
+        addQuarter(quarter);
+        totals[row] += points;
+        quarterPoints[quarter][row] += points;
+        quarterRegistrations[quarter][row] += registrations;
+    }
+
+    // ------------------ Events ------------------
+
+    public int eventCount() {
+        return eventCount;
+    }
+
+    public int eventRow(int eventId) {
+        return eventRows.get(eventId) - 1;
+    }
+
+    public int eventId(int row) {
+        return eventIds[row];
+    }
+
+    public int points(int row) {
+        return eventPoints[row];
+    }
+
+    public int quarter(int row) {
+        return eventQuarters[row];
+    }
+
+    public void addEvent(int eventId, int points, int quarter) {
+        int row = eventRow(eventId);
+        if (row < 0) {
+            row = eventCount;
+            if (row == eventIds.length) {
+                eventIds = Arrays.copyOf(eventIds, row * 2);
+                eventPoints = Arrays.copyOf(eventPoints, row * 2);
+                eventQuarters = Arrays.copyOf(eventQuarters, row * 2);
+            }
+            eventIds[row] = eventId;
+            eventRows.put(eventId, row + 1);
+            eventCount = row + 1;
+        }
+        eventPoints[row] = points;
+        eventQuarters[row] = quarter;
+    }
+
+    public void removeEvent(int eventId) {
+        int row = eventRow(eventId);
+        if (row < 0) {
+            return;
+        }
+        int last = eventCount - 1;
+        if (row != last) {
+            eventIds[row] = eventIds[last];
+            eventPoints[row] = eventPoints[last];
+            eventQuarters[row] = eventQuarters[last];
+            eventRows.put(eventIds[row], row + 1);
+        }
+        eventRows.remove(eventId);
+        eventCount = last;
+    }
+
+    // ------------------ Copying ------------------
+
+    // A copy that can be scanned while the tracker goes on changing this one. The caller holds the
+    // tracker's structure write lock, so no row moves and no points change meanwhile.
+    public ColumnStore copy() {
+        ColumnStore copy = new ColumnStore();
+        copy.studentIds = studentIds.clone();
+        copy.classYears = classYears.clone();
+        copy.totals = totals.clone();
+        copy.quarterPoints = copyColumns(quarterPoints);
+        copy.quarterRegistrations = copyColumns(quarterRegistrations);
+        copy.studentCount = studentCount;
+        for (int row = 0; row < studentCount; row++) {
+            copy.studentRows.put(studentIds[row], row + 1);
+        }
+        copy.eventIds = eventIds.clone();
+        copy.eventPoints = eventPoints.clone();
+        copy.eventQuarters = eventQuarters.clone();
+        copy.eventCount = eventCount;
+        for (int row = 0; row < eventCount; row++) {
+            copy.eventRows.put(eventIds[row], row + 1);
+        }
+        return copy;
+    }
+
+    // ------------------ Internals ------------------
+
+    private void growStudents(int capacity) {
+        studentIds = Arrays.copyOf(studentIds, capacity);
+        classYears = Arrays.copyOf(classYears, capacity);
+        totals = Arrays.copyOf(totals, capacity);
+        quarterPoints = growColumns(quarterPoints, capacity);
+        quarterRegistrations = growColumns(quarterRegistrations, capacity);
+    }
+
+    private static int[][] growColumns(int[][] columns, int capacity) {
+        int[][] grown = columns.clone();
+        for (int i = 0; i < grown.length; i++) {
+            if (grown[i] != null) {
+                grown[i] = Arrays.copyOf(grown[i], capacity);
+            }
+        }
+        return grown;
+    }
+
+    private static int[][] copyColumns(int[][] columns) {
+        int[][] copy = columns.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] != null) {
+                copy[i] = copy[i].clone();
+            }
+        }
+        return copy;
+    }
+
+    // Quarters can first appear during a registration, when other students are being credited
+    // in parallel, so adding columns is the one change that takes a lock. The registration column
+    // is published last, so a reader that finds it also finds the points column.
+    private void addQuarter(int quarter) {
+        int[][] registrations = quarterRegistrations;
+        if (quarter < registrations.length && registrations[quarter] != null) {
+            return;
+        }
+        synchronized (this) {
+            registrations = quarterRegistrations;
+            if (quarter < registrations.length && registrations[quarter] != null) {
+                return;
+            }
+            quarterPoints = withColumn(quarterPoints, quarter, studentIds.length);
+            quarterRegistrations = withColumn(registrations, quarter, studentIds.length);
+        }
+    }
+
+    private static int[][] withColumn(int[][] columns, int quarter, int capacity) {
+        int[][] grown = Arrays.copyOf(columns, Math.max(columns.length, quarter + 1));
+        grown[quarter] = new int[capacity];
+        return grown;
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+// Parallel reader for the CSV snapshot files. The file is cut into byte ranges that end on line
+// boundaries, and the ranges are mapped and parsed on the common ForkJoinPool straight from the
+// bytes: fields are found by their comma offsets and ints are parsed in place, so only string
+// fields allocate. Each range fills its own result object; the results come back in file order,
+// and lines that do not parse are reported in file order too, as the sequential loaders do.
+public class CsvLoader {
+    // Ranges are at least this long, so a small file is parsed by a single task
+    private static final int MIN_RANGE_BYTES = 1 << 20;
+    // Ranges per worker thread, so a slow range does not leave the other threads idle
+    private static final int RANGES_PER_THREAD = 4;
+    private static final int MAX_FIELDS = 8;
+
+    public interface LineParser<R> {
+        // May throw NumberFormatException, which reports the line as bad
+        void parse(Line line, R result);
+    }
+
+    // One line of the file. Fields are split on commas like String.split(","), which drops
+    // trailing empty fields, and are read trimmed like String.trim.
+    public static final class Line {
+        private ByteBuffer buffer;
+        private int start;
+        private int end;
+        private int fieldCount;
+        private final int[] fieldStarts = new int[MAX_FIELDS];
+        private final int[] fieldEnds = new int[MAX_FIELDS];
+        private byte[] scratch = new byte[64];
+
+        private void set(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            fieldCount = 0;
+            int fieldStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || buffer.get(i) == ',') {
+                    if (fieldCount == MAX_FIELDS) {
+                        // More fields than any file has; the count alone makes the line bad
+                        fieldCount++;
+                        return;
+                    }
+                    fieldStarts[fieldCount] = fieldStart;
+                    fieldEnds[fieldCount] = i;
+                    fieldCount++;
+                    fieldStart = i + 1;
+                }
+            }
+            while (fieldCount > 1 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+                fieldCount--;
+            }
+        }
+
+        public int fieldCount() {
+            return fieldCount;
+        }
+
+        public int intField(int index) {
+            int from = trimStart(index);
+            int to = trimEnd(index, from);
+            if (from == to) {
+                throw new NumberFormatException("Empty number");
+            }
+            boolean negative = buffer.get(from) == '-';
+            if (negative || buffer.get(from) == '+') {
+                from++;
+            }
+            if (from == to || to - from > 10) {
+                throw new NumberFormatException(stringField(index));
+            }
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException(stringField(index));
+                }
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new NumberFormatException(stringField(index));
+            }
+            return (int) value;
+        }
+
+        public String stringField(int index) {
+            int from = trimStart(index);
+            return decode(from, trimEnd(index, from));
+        }
+
+        // The whole line, for diagnostics
+        public String text() {
+            return decode(start, end);
+        }
+
+        private int trimStart(int index) {
+            int from = fieldStarts[index];
+            while (from < fieldEnds[index] && (buffer.get(from) & 0xFF) <= ' ') {
+                from++;
+            }
+            return from;
+        }
+
+        private int trimEnd(int index, int from) {
+            int to = fieldEnds[index];
+            while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+                to--;
+            }
+            return to;
+        }
+
+        private String decode(int from, int to) {
+            int length = to - from;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(from, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Parses the file into one result per range, in file order. Lines with a field count other
+    // than fieldCount, or that the parser rejects, are printed as "Bad <kind> line: <line>".
+    public static <R> List<R> read(String fileName, String kind, int fieldCount,
+                                   Supplier<R> newResult, LineParser<R> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long[] bounds = splitLines(channel);
+            int ranges = bounds.length - 1;
+            List<R> results = new ArrayList<>(ranges);
+            List<List<String>> badLines = new ArrayList<>(ranges);
+            for (int i = 0; i < ranges; i++) {
+                results.add(newResult.get());
+                badLines.add(new ArrayList<>());
+            }
+            try {
+                ForkJoinPool.commonPool().invoke(new ParseTask<>(channel, bounds, 0, ranges, fieldCount, parser, results, badLines));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (List<String> lines : badLines) {
+                for (String line : lines) {
+                    System.out.println("Bad " + kind + " line: " + line);
+                }
+            }
+            return results;
+        }
+    }
+
+    // Splits ranges [from, to) in half until each task has one range left to parse
+    private static final class ParseTask<R> extends RecursiveAction {
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final int fieldCount;
+        private final LineParser<R> parser;
+        private final List<R> results;
+        private final List<List<String>> badLines;
+
+        ParseTask(FileChannel channel, long[] bounds, int from, int to, int fieldCount,
+                  LineParser<R> parser, List<R> results, List<List<String>> badLines) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.fieldCount = fieldCount;
+            this.parser = parser;
+            this.results = results;
+            this.badLines = badLines;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseTask<>(channel, bounds, from, middle, fieldCount, parser, results, badLines),
+                        new ParseTask<>(channel, bounds, middle, to, fieldCount, parser, results, badLines));
+                return;
+            }
+            try {
+                parseRange(channel.map(FileChannel.MapMode.READ_ONLY, bounds[from], bounds[to] - bounds[from]),
+                        results.get(from), badLines.get(from));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void parseRange(ByteBuffer buffer, R result, List<String> bad) {
+            Line line = new Line();
+            int limit = buffer.limit();
+            int start = 0;
+            while (start < limit) {
+                int end = start;
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                int next = end + 1;
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                if (end > start && buffer.get(start) == '#') {
+                    // The SnapshotFiles trailer
+                    start = next;
+                    continue;
+                }
+                line.set(buffer, start, end);
+                if (line.fieldCount() != fieldCount) {
+                    bad.add(line.text());
+                } else {
+                    try {
+                        parser.parse(line, result);
+                    } catch (NumberFormatException e) {
+                        bad.add(line.text());
+                    }
+                }
+                start = next;
+            }
+        }
+    }
+
+    // Range boundaries: 0, then the offset just past the first newline at or after each nominal
+    // cut, then the file size. Each range is short enough to be mapped on its own.
+    private static long[] splitLines(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int threads = ForkJoinPool.getCommonPoolParallelism();
+        long ranges = Math.max(1, Math.min(size / MIN_RANGE_BYTES, (long) threads * RANGES_PER_THREAD));
+        ranges = Math.max(ranges, (size + Integer.MAX_VALUE - 1) / Integer.MAX_VALUE * 2);
+        long[] bounds = new long[(int) ranges + 1];
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        int count = 1;
+        for (int i = 1; i < ranges; i++) {
+            long cut = Math.max(size / ranges * i, bounds[count - 1]);
+            long boundary = nextLineStart(channel, cut, size, probe);
+            if (boundary > bounds[count - 1] && boundary < size) {
+                bounds[count++] = boundary;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Writes a synthetic roster in the tracker's file formats, for load and soak testing at sizes the
+// sample data never reaches. Rows are streamed to disk as they are generated; the only per-entity
+// memory is the event popularity table, so millions of registrations fit in a small heap.
+//
+// Students get ids [0, students) and events the ids after them. Event popularity follows a Zipf
+// distribution (skew 0 makes it uniform), and the number of events a student attends is drawn
+// around the requested mean with a long tail, so some students are far busier than others.
+public class DataGenerator {
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ra", "den", "vo", "shi", "tan", "bel", "qua", "rin", "so", "ma", "zel", "tor", "ny"
+    };
+
+    private final int students;
+    private final int events;
+    private final double registrations;
+    private final int quarters;
+    private final int startYear;
+    private final double skew;
+    private final int nameLength;
+    private final Random random;
+
+    public DataGenerator(int students, int events, double registrations, int quarters, int startYear,
+                         double skew, int nameLength, long seed) {
+        this.students = students;
+        this.events = events;
+        this.registrations = registrations;
+        this.quarters = quarters;
+        this.startYear = startYear;
+        this.skew = skew;
+        this.nameLength = nameLength;
+        this.random = new Random(seed);
+    }
+
+    // Draws ranks in [0, size) with probability proportional to 1 / (rank + 1)^skew
+    public static final class Zipf {
+        private final double[] cumulative;
+
+        public Zipf(int size, double skew) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = sum;
+            }
+        }
+
+        public int next(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int pos = Arrays.binarySearch(cumulative, target);
+            return pos >= 0 ? pos : Math.min(-pos - 1, cumulative.length - 1);
+        }
+    }
+
+    public String quarter(int index) {
+        return (startYear + index / 4) + "Q" + (index % 4 + 1);
+    }
+
+    // Ids are spelled out in syllables so names are unique, then padded to the requested length
+    public String name(int id, String suffix) {
+        StringBuilder name = new StringBuilder();
+        int rest = id;
+        do {
+            name.append(SYLLABLES[rest % SYLLABLES.length]);
+            rest /= SYLLABLES.length;
+        } while (rest > 0);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        name.append(' ').append(suffix);
+        // Filler of random letters in words of nine, to reach the requested length
+        for (int i = 0; name.length() < nameLength; i++) {
+            name.append(i % 10 == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        return name.toString().trim();
+    }
+
+    // Refuses a directory that already has files in it, so real data is never overwritten
+    public void write(Path dir) throws IOException {
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                if (entries.iterator().hasNext()) {
+                    throw new IOException("Not writing into " + dir + ", it is not empty");
+                }
+            }
+        }
+        Files.createDirectories(dir);
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("student"))) {
+            for (int id = 0; id < students; id++) {
+                writer.write(id + "," + name(id, "Student") + "," + (startYear + 1 + random.nextInt(4)));
+                writer.newLine();
+            }
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("event"))) {
+            for (int i = 0; i < events; i++) {
+                writer.write((students + i) + "," + name(i, "Event") + "," + (1 + random.nextInt(20)) + "," + quarter(random.nextInt(quarters)));
+                writer.newLine();
+            }
+        }
+        // Popularity ranks are scattered over the event ids so the busy events are not all adjacent
+        int[] eventByRank = new int[events];
+        for (int i = 0; i < events; i++) {
+            int j = random.nextInt(i + 1);
+            eventByRank[i] = eventByRank[j];
+            eventByRank[j] = students + i;
+        }
+        Zipf popularity = new Zipf(events, skew);
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("participation"))) {
+            for (int id = 0; id < students; id++) {
+                // Exponential around the mean gives most students a few events and a few students many
+                int count = (int) Math.min(events, Math.round(-Math.log(1 - random.nextDouble()) * registrations));
+                IntSet chosen = new IntSet();
+                for (int tries = 0; chosen.size() < count && tries < count * 4; tries++) {
+                    int eventId = eventByRank[popularity.next(random)];
+                    if (chosen.add(eventId)) {
+                        writer.write(id + "," + eventId);
+                        writer.newLine();
+                        written++;
+                    }
+                }
+            }
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve("usedIDs"))) {
+            for (int id = 0; id < students + events; id++) {
+                writer.write(Integer.toString(id));
+                writer.newLine();
+            }
+        }
+        System.out.println("Wrote " + students + " students, " + events + " events and " + written + " registrations to " + dir);
+        int digits = Integer.toString(students + events - 1).length();
+        if (digits > 4) {
+            System.out.println("Run the tracker with -DidLength=" + digits + " or wider so new ids do not collide");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                usage();
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (args.length % 2 != 0) {
+            usage();
+        }
+        if (!options.containsKey("dir")) {
+            usage();
+        }
+        try {
+            // The default roster fits the default 4-digit ids
+            int students = Integer.parseInt(options.getOrDefault("students", "9000"));
+            DataGenerator generator = new DataGenerator(
+                    students,
+                    Integer.parseInt(options.getOrDefault("events", Integer.toString(Math.max(students / 20, 10)))),
+                    Double.parseDouble(options.getOrDefault("registrations", "5")),
+                    Integer.parseInt(options.getOrDefault("quarters", "4")),
+                    Integer.parseInt(options.getOrDefault("start-year", "2023")),
+                    Double.parseDouble(options.getOrDefault("skew", "1.0")),
+                    Integer.parseInt(options.getOrDefault("name-length", "0")),
+                    Long.parseLong(options.getOrDefault("seed", "1")));
+            generator.write(Paths.get(options.get("dir")));
+        } catch (NumberFormatException e) {
+            System.err.println("Bad number: " + e.getMessage());
+            usage();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: DataGenerator --dir <new or empty dir> [--students 9000] [--events students/20]"
+                + " [--registrations 5] [--quarters 4] [--start-year 2023] [--skew 1.0] [--name-length 0] [--seed 1]");
+        System.exit(2);
+    }
+}
@@ -1,14 +1,15 @@
 public class Events {
     private final int id;
-    private String name;
-    private int points;
-    private String duration;
+    private volatile String name;
+    private volatile int points;
+    // Interned through Quarters, so quarterly aggregation compares ints
+    private volatile int quarter;
 
     public Events(int id, String name, int points, String duration){
         this.id = id;
         this.name = name;
         this.points = points;
-        this.duration = duration;
+        this.quarter = Quarters.key(duration);
     }
     //toString
     public void setName(String name){
@@ -16,7 +17,7 @@ public class Events {
     }
 
     public void setDuration(String duration){
-        this.duration = duration;
+        this.quarter = Quarters.key(duration);
     }
 
     public void setPoints(int points){
@@ -28,7 +29,8 @@ public class Events {
     public int getId() { return id; }
 
     public String getName() { return name; }
-    public String getDuration() { return duration; }
+    public String getDuration() { return Quarters.name(quarter); }
+    public int getQuarter() { return quarter; }
 
     @Override
     public String toString(){
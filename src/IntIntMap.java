@@ -0,0 +1,165 @@
+// Open-addressing map from int keys to int values where a missing key reads as 0. Entries whose
+// value drops back to 0 are removed, so the table only holds non-zero counters.
+public class IntIntMap {
+    private static final int MIN_CAPACITY = 16;
+
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private boolean containsZero;
+    private int zeroValue;
+    private int size;
+
+    public IntIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Probes local copies of the tables so a read racing a resize stays inside one array
+    public int get(int key) {
+        if (key == 0) {
+            return containsZero ? zeroValue : 0;
+        }
+        int[] keyTable = keys;
+        int[] valueTable = values;
+        int tableMask = keyTable.length - 1;
+        int pos = IntSet.hash(key) & tableMask;
+        int current;
+        while ((current = keyTable[pos]) != 0) {
+            if (current == key) {
+                return valueTable[pos];
+            }
+            pos = (pos + 1) & tableMask;
+        }
+        return 0;
+    }
+
+    public void forEach(EntryConsumer action) {
+        if (containsZero) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    // Adds delta to the value stored under key and returns the new value
+    public int add(int key, int delta) {
+        return put(key, get(key) + delta);
+    }
+
+    public int put(int key, int value) {
+        if (value == 0) {
+            remove(key);
+            return 0;
+        }
+        if (key == 0) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return value;
+        }
+        int pos = IntSet.hash(key) & mask;
+        int current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) {
+                values[pos] = value;
+                return value;
+            }
+            pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        values[pos] = value;
+        if (++size > keys.length * 3 / 4) {
+            rehash(keys.length << 1);
+        }
+        return value;
+    }
+
+    public int remove(int key) {
+        if (key == 0) {
+            if (!containsZero) {
+                return 0;
+            }
+            containsZero = false;
+            size--;
+            return zeroValue;
+        }
+        int pos = IntSet.hash(key) & mask;
+        int current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) {
+                int value = values[pos];
+                size--;
+                shiftKeys(pos);
+                return value;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return 0;
+    }
+
+    private void shiftKeys(int pos) {
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            int current;
+            while (true) {
+                if ((current = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int slot = IntSet.hash(current) & mask;
+                if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int pos = IntSet.hash(oldKeys[i]) & mask;
+                while (keys[pos] != 0) {
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = oldKeys[i];
+                values[pos] = oldValues[i];
+            }
+        }
+    }
+}
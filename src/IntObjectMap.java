@@ -0,0 +1,159 @@
+import java.util.function.IntFunction;
+
+// Open-addressing map from primitive int keys to objects. A null value marks a free slot,
+// so lookups never box the key.
+public class IntObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private int[] keys;
+    private V[] values;
+    private int mask;
+    private int size;
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Probes local copies of the tables so a read racing a resize stays inside one array
+    public V get(int key) {
+        int[] keyTable = keys;
+        V[] valueTable = values;
+        int tableMask = valueTable.length - 1;
+        int pos = IntSet.hash(key) & tableMask;
+        V value;
+        while ((value = valueTable[pos]) != null) {
+            if (keyTable[pos] == key) {
+                return value;
+            }
+            pos = (pos + 1) & tableMask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    public V put(int key, V value) {
+        int pos = IntSet.hash(key) & mask;
+        V current;
+        while ((current = values[pos]) != null) {
+            if (keys[pos] == key) {
+                values[pos] = value;
+                return current;
+            }
+            pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        values[pos] = value;
+        if (++size > values.length * 3 / 4) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    public V computeIfAbsent(int key, IntFunction<V> mappingFunction) {
+        V value = get(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public V remove(int key) {
+        int pos = IntSet.hash(key) & mask;
+        V current;
+        while ((current = values[pos]) != null) {
+            if (keys[pos] == key) {
+                size--;
+                shiftKeys(pos);
+                return current;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return null;
+    }
+
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    private void shiftKeys(int pos) {
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            while (true) {
+                if (values[pos] == null) {
+                    values[last] = null;
+                    return;
+                }
+                int slot = IntSet.hash(keys[pos]) & mask;
+                if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = keys[pos];
+            values[last] = values[pos];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int pos = IntSet.hash(oldKeys[i]) & mask;
+                while (values[pos] != null) {
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = oldKeys[i];
+                values[pos] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Open-addressing set of primitive ints. Zero marks a free slot, so the value 0 itself is
+// tracked by a separate flag; removals shift the probe chain back instead of leaving tombstones.
+public class IntSet {
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] keys;
+    private int mask;
+    private boolean containsZero;
+    private int size;
+
+    public IntSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Probes a local copy of the table so a read racing a resize stays inside one array
+    public boolean contains(int key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        int[] table = keys;
+        int tableMask = table.length - 1;
+        int pos = hash(key) & tableMask;
+        int current;
+        while ((current = table[pos]) != 0) {
+            if (current == key) {
+                return true;
+            }
+            pos = (pos + 1) & tableMask;
+        }
+        return false;
+    }
+
+    public boolean add(int key) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int pos = hash(key) & mask;
+        int current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) {
+                return false;
+            }
+            pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        if (++size > keys.length * 3 / 4) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean remove(int key) {
+        if (key == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int pos = hash(key) & mask;
+        int current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) {
+                size--;
+                shiftKeys(pos);
+                return true;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return false;
+    }
+
+    public void forEach(IntConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (int key : keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] result = new int[size];
+        int i = 0;
+        if (containsZero) {
+            result[i++] = 0;
+        }
+        for (int key : keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    public IntSet copy() {
+        IntSet copy = new IntSet(MIN_CAPACITY);
+        copy.keys = Arrays.copyOf(keys, keys.length);
+        copy.mask = mask;
+        copy.containsZero = containsZero;
+        copy.size = size;
+        return copy;
+    }
+
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Closes the gap left at pos by moving later entries of the same probe chain into it
+    private void shiftKeys(int pos) {
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            int current;
+            while (true) {
+                if ((current = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int slot = hash(current) & mask;
+                if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        keys = new int[capacity];
+        mask = capacity - 1;
+        for (int key : oldKeys) {
+            if (key != 0) {
+                int pos = hash(key) & mask;
+                while (keys[pos] != 0) {
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = key;
+            }
+        }
+    }
+}
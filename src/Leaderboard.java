@@ -0,0 +1,205 @@
+// Per-quarter ranking of students by points, highest first and ties broken by lower id.
+// Points live in an IntIntMap; the ranking is a treap whose nodes know their subtree size,
+// so top-K pages and "rank of student S" are O(log n) and the leader is cached for O(1) reads.
+// Students with zero points are not ranked. Updates and range queries synchronize on the board;
+// the leader is published through a volatile field so reading it takes no lock.
+public class Leaderboard {
+    private static final class Node {
+        final int studentId;
+        final int points;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(int studentId, int points, int priority) {
+            this.studentId = studentId;
+            this.points = points;
+            this.priority = priority;
+        }
+    }
+
+    private final IntIntMap points = new IntIntMap();
+    private Node root;
+    // Leader's points in the high half, student id in the low half; 0 when the board is empty
+    private volatile long leader;
+    private int seed = 0x2545F491;
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    public synchronized boolean isEmpty() {
+        return root == null;
+    }
+
+    public synchronized int points(int studentId) {
+        return points.get(studentId);
+    }
+
+    // Adds delta to the student's points and moves the student to its new position
+    public synchronized void add(int studentId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        int oldPoints = points.get(studentId);
+        int newPoints = points.add(studentId, delta);
+        if (oldPoints != 0) {
+            root = erase(root, studentId, oldPoints);
+        }
+        if (newPoints != 0) {
+            root = insert(root, new Node(studentId, newPoints, nextPriority()));
+        }
+        Node first = root;
+        while (first != null && first.left != null) {
+            first = first.left;
+        }
+        leader = first != null ? ((long) first.points << 32) | (first.studentId & 0xFFFFFFFFL) : 0;
+    }
+
+    // Highest ranked student, or -1 when nobody has points
+    public int top() {
+        long current = leader;
+        return current != 0 ? (int) current : -1;
+    }
+
+    public int topPoints() {
+        return (int) (leader >> 32);
+    }
+
+    // Student ids ranked from (0-based) through from + count - 1
+    public synchronized int[] page(int from, int count) {
+        int end = Math.min(size(), from + Math.max(count, 0));
+        if (from < 0 || from >= end) {
+            return new int[0];
+        }
+        int[] result = new int[end - from];
+        collect(root, from, end, 0, result);
+        return result;
+    }
+
+    // 1-based rank of the student, or -1 when the student has no points
+    public synchronized int rank(int studentId) {
+        int studentPoints = points.get(studentId);
+        if (studentPoints == 0) {
+            return -1;
+        }
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(studentId, studentPoints, node);
+            if (cmp == 0) {
+                return before + size(node.left) + 1;
+            } else if (cmp < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    // Negative when (studentId, studentPoints) ranks ahead of node
+    private static int compare(int studentId, int studentPoints, Node node) {
+        if (studentPoints != node.points) {
+            return studentPoints > node.points ? -1 : 1;
+        }
+        return Integer.compare(studentId, node.studentId);
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added.studentId, added.points);
+            added.left = parts[0];
+            added.right = parts[1];
+            return update(added);
+        }
+        if (compare(added.studentId, added.points, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return update(node);
+    }
+
+    // Splits into nodes ranked ahead of (studentId, studentPoints) and the rest
+    private static Node[] split(Node node, int studentId, int studentPoints) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(studentId, studentPoints, node) > 0) {
+            Node[] parts = split(node.right, studentId, studentPoints);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, studentId, studentPoints);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static Node erase(Node node, int studentId, int studentPoints) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(studentId, studentPoints, node);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = erase(node.left, studentId, studentPoints);
+        } else {
+            node.right = erase(node.right, studentId, studentPoints);
+        }
+        return update(node);
+    }
+
+    // In-order walk that skips whole subtrees outside [from, end); offset is the rank of node's subtree
+    private static void collect(Node node, int from, int end, int offset, int[] result) {
+        if (node == null || offset >= end || offset + node.size <= from) {
+            return;
+        }
+        collect(node.left, from, end, offset, result);
+        int index = offset + size(node.left);
+        if (index >= from && index < end) {
+            result[index - from] = node.studentId;
+        }
+        collect(node.right, from, end, index + 1, result);
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
@@ -5,9 +5,10 @@ import java.awt.event.*;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
-public class MainFrame extends JFrame implements ActionListener {
+public class MainFrame extends JFrame implements ActionListener, TrackerListener {
     // Data tracker
     static StudentTracker tracker;
     // Button group for view radio buttons
@@ -17,7 +18,6 @@ public class MainFrame extends JFrame implements ActionListener {
     JRadioButton studentViewRadioButton, eventViewRadioButton, reportViewRadioButton;
     JButton detailButton, eventDetailButton, returnButton, eventReturnButton;
     JComboBox<String> quarterListComboBox;
-    private final String[] quarterStrings = {"2023Q1", "2023Q2", "2023Q3", "2023Q4"};
 
     // Bottom panel components
     JButton studentAddButton, eventAddButton, submitButton;
@@ -34,7 +34,6 @@ public class MainFrame extends JFrame implements ActionListener {
     static JComboBox<String> classYearComboBox;
     private static final String[] classYearStrings = {"2023", "2024", "2025", "2026", "2027"};
     static JComboBox<String> durationComboBox;
-    private static final String[] durationStrings = {"2023Q1", "2023Q2", "2023Q3", "2023Q4"};
 
     JPanel mainPanel;
     JPanel centerViewPanel = new JPanel();
@@ -52,6 +51,11 @@ public class MainFrame extends JFrame implements ActionListener {
     StudentViewDataModel studentViewDataModel;
     EventViewDataModel eventViewDataModel;
 
+    // Report computation in flight, cancelled when another quarter is picked
+    private ReportWorker reportWorker;
+    // Class year, participation and popularity rollups, cached until the data changes
+    private ReportEngine reportEngine;
+
     // Used to remember the last selected target (student/event name)
     private static String selectedTarget = "";
 
@@ -71,14 +75,21 @@ public class MainFrame extends JFrame implements ActionListener {
     private static final String EVENTUPDATE_BUTTON = "EVENTUPDATE_BUTTON";
     private static final String EVENTRETURN_BUTTON = "EVENTRETURN_BUTTON";
     private static final String QUARTER_COMBOBOX = "QUARTER_COMBOBOX";
+    private static final String ROLLUP_BUTTON = "ROLLUP_BUTTON";
 
     public MainFrame(StudentTracker tracker) throws IOException {
         setSize(512, 550);
         setLocation(1024, 0);
         setTitle("Attendance");
         MainFrame.tracker = tracker;
+        reportEngine = new ReportEngine(tracker, true);
         addWindowListener(new WindowAdapter() {
             public void windowClosing(WindowEvent e) {
+                try {
+                    tracker.close();
+                } catch (IOException ex) {
+                    System.err.println("Error saving data: " + ex.getMessage());
+                }
                 System.exit(0);
             }
         });
@@ -92,6 +103,7 @@ public class MainFrame extends JFrame implements ActionListener {
         mainPanel.add(studentTable.getTableHeader(), BorderLayout.PAGE_START);
         mainPanel.add(centerViewPanel, BorderLayout.CENTER);
         add(mainPanel);
+        tracker.addListener(this);
         setVisible(true);
     }
 
@@ -113,7 +125,7 @@ public class MainFrame extends JFrame implements ActionListener {
         reportViewRadioButton.addActionListener(this);
         reportViewRadioButton.setActionCommand(REPORT_RADIOBUTTON);
 
-        quarterListComboBox = new JComboBox<>(quarterStrings);
+        quarterListComboBox = new JComboBox<>(reportQuarters().toArray(new String[0]));
         quarterListComboBox.setSelectedIndex(0);
         quarterListComboBox.addActionListener(this);
         quarterListComboBox.setActionCommand(QUARTER_COMBOBOX);
@@ -136,6 +148,8 @@ public class MainFrame extends JFrame implements ActionListener {
         eventReturnButton.setActionCommand(EVENTRETURN_BUTTON);
 
         quarterlyWinnerInformation = new QuarterlyWinnerInformation();
+        quarterlyWinnerInformation.rollupButton.addActionListener(this);
+        quarterlyWinnerInformation.rollupButton.setActionCommand(ROLLUP_BUTTON);
 
         selectionPanel.add(studentViewRadioButton);
         selectionPanel.add(eventViewRadioButton);
@@ -215,7 +229,7 @@ public class MainFrame extends JFrame implements ActionListener {
         addHandCursorListener(eventTable);
 
         // Set winner information
-        quarterlyWinnerInformation.topStudent.setValue(tracker.getTopStudentOfQuarter("2023Q1").getName());
+        quarterlyWinnerInformation.topStudent.setValue(tracker.getTopStudentOfQuarter(reportQuarters().get(0)).getName());
         quarterlyWinnerInformation.randomWinner.setValue(tracker.getRandomWinner().getName());
 
         // Mouse listeners to capture selection from tables
@@ -272,10 +286,11 @@ public class MainFrame extends JFrame implements ActionListener {
 
     // Creates a table with a custom cell renderer for Integer values
     private JTable createCustomTable(AbstractTableModel model) {
+        CenteredTableCellRenderer centeredRenderer = new CenteredTableCellRenderer();
         JTable table = new JTable(model) {
             public TableCellRenderer getCellRenderer(int row, int column) {
                 Object value = getValueAt(row, column);
-                return (value instanceof Integer) ? new CenteredTableCellRenderer() : super.getCellRenderer(row, column);
+                return (value instanceof Integer) ? centeredRenderer : super.getCellRenderer(row, column);
             }
         };
         table.setFillsViewportHeight(true);
@@ -339,7 +354,7 @@ public class MainFrame extends JFrame implements ActionListener {
     }
 
     private void showReportView() {
-        refreshReport("2023Q1");
+        refreshReport(quarterListComboBox.getItemAt(0));
         reportTable.repaint();
         quarterListComboBox.setSelectedIndex(0);
         centerCardLayout.show(centerViewPanel, "report");
@@ -440,6 +455,9 @@ public class MainFrame extends JFrame implements ActionListener {
                 refreshReport(duration);
                 reportTable.repaint();
                 break;
+            case ROLLUP_BUTTON:
+                showRollups();
+                break;
             case DETAIL_BUTTON:
                 showStudentDetailView();
                 break;
@@ -464,10 +482,8 @@ public class MainFrame extends JFrame implements ActionListener {
                 break;
             case REMOVE_BUTTON:
                 try {
-                    tracker.removeStudent(tracker.getIdBasedOnName(selectedTarget));
-                    refreshStudentTable();
-                    refreshReportTable();
-                    studentTable.repaint();
+                    int studentId = tracker.getIdBasedOnName(selectedTarget);
+                    tracker.removeStudent(studentId);
                     showStudentView();
                     studentTable.clearSelection();
                 } catch (IOException ex) {
@@ -476,9 +492,8 @@ public class MainFrame extends JFrame implements ActionListener {
                 break;
             case EVENTREMOVE_BUTTON:
                 try {
-                    tracker.removeEvent(tracker.getEventIdBasedOnName(selectedTarget));
-                    refreshEventTable();
-                    eventTable.repaint();
+                    int eventId = tracker.getEventIdBasedOnName(selectedTarget);
+                    tracker.removeEvent(eventId);
                     showEventView();
                     eventTable.clearSelection();
                 } catch (IOException ex) {
@@ -487,21 +502,30 @@ public class MainFrame extends JFrame implements ActionListener {
                 break;
             case STUDENTUPDATE_BUTTON:
                 try {
+                    // Looked up before the rename, which retires the old name
+                    int studentId = tracker.getIdBasedOnName(selectedTarget);
                     tracker.setStudentName(selectedTarget, studentPersonalInformation.name.getValue());
                     String selectedValue = (String) studentPersonalInformation.classComboBox.getSelectedItem();
                     int selectedIntValue = Integer.parseInt(selectedValue);
-                    tracker.setStudentYear(tracker.getIdBasedOnName(selectedTarget), selectedIntValue);
+                    tracker.setStudentYear(studentId, selectedIntValue);
+                    if (tracker.students.containsKey(studentId)) {
+                        selectedTarget = tracker.students.get(studentId).getName();
+                    }
                 } catch (IOException ex) {
                     throw new RuntimeException(ex);
                 }
                 break;
             case EVENTUPDATE_BUTTON:
                 try {
+                    // Looked up before the rename, which retires the old name
+                    int eventId = tracker.getEventIdBasedOnName(selectedTarget);
                     tracker.setEventName(selectedTarget, eventInformation.name.getValue());
                     String selectedValue = (String) eventInformation.eventDurationComboBox.getSelectedItem();
-                    tracker.setEventDuration(tracker.getEventIdBasedOnName(selectedTarget), selectedValue);
-                    tracker.setEventPoints(tracker.getEventIdBasedOnName(selectedTarget),
-                            Integer.parseInt(eventInformation.Points.getValue()));
+                    tracker.setEventDuration(eventId, selectedValue);
+                    tracker.setEventPoints(eventId, Integer.parseInt(eventInformation.Points.getValue()));
+                    if (tracker.events.containsKey(eventId)) {
+                        selectedTarget = tracker.events.get(eventId).getName();
+                    }
                 } catch (IOException ex) {
                     throw new RuntimeException(ex);
                 }
@@ -514,10 +538,6 @@ public class MainFrame extends JFrame implements ActionListener {
                             String selectedValue = (String) classYearComboBox.getSelectedItem();
                             int selectedIntValue = Integer.parseInt(selectedValue);
                             tracker.addStudent(addStudentOrEventMenu.name.getValue(), selectedIntValue);
-                            refreshStudentTable();
-                            refreshReportTable();
-                            refreshAllDetailTables();
-                            studentTable.repaint();
                             addStudentOrEventMenu.setVisible(false);
                             studentAddButton.setVisible(true);
                             eventAddButton.setVisible(false);
@@ -537,9 +557,6 @@ public class MainFrame extends JFrame implements ActionListener {
                             tracker.addEvent(addStudentOrEventMenu.name.getValue(),
                                     Integer.parseInt(addStudentOrEventMenu.points.getValue()),
                                     selectedValue);
-                            refreshEventTable();
-                            refreshAllDetailTables();
-                            eventTable.repaint();
                             addStudentOrEventMenu.setVisible(false);
                             eventAddButton.setVisible(true);
                         } else {
@@ -571,28 +588,107 @@ public class MainFrame extends JFrame implements ActionListener {
         eventDetailViewDataModel.refresh(selectedTarget);
         eventInformation.name.setTextField(selectedTarget);
         String eventDuration = tracker.events.get(tracker.getEventIdBasedOnName(selectedTarget)).getDuration();
-        int selectionIndex = Arrays.asList("2023Q1", "2023Q2", "2023Q3", "2023Q4").indexOf(eventDuration);
-        eventInformation.eventDurationComboBox.setSelectedIndex(selectionIndex);
+        eventInformation.eventDurationComboBox.setSelectedItem(eventDuration);
         eventInformation.Points.setTextField(String.valueOf(
                 tracker.events.get(tracker.getEventIdBasedOnName(selectedTarget)).getPoints()));
     }
 
+    // The report is computed off the event dispatch thread; the table keeps showing the previous
+    // quarter, with a progress bar, until the new one is ready
     public void refreshReport(String duration) {
-        reportViewDataModel.refresh(duration);
-        quarterlyWinnerInformation.topStudent.setValue(tracker.getTopStudentOfQuarter(duration).getName());
-        quarterlyWinnerInformation.randomWinner.setValue(tracker.getRandomWinner().getName());
+        if (reportWorker != null) {
+            reportWorker.cancel(false);
+        }
+        JProgressBar progress = quarterlyWinnerInformation.progress;
+        progress.setValue(0);
+        progress.setVisible(true);
+        reportWorker = new ReportWorker(duration);
+        reportWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName()) && e.getSource() == reportWorker) {
+                progress.setValue((Integer) e.getNewValue());
+            }
+        });
+        reportWorker.execute();
+    }
+
+    // Quarters come from the events, so a new year shows up as soon as an event is held in it
+    public void refreshQuarterChoices() {
+        setChoices(quarterListComboBox, reportQuarters());
+        List<String> durations = durationChoices();
+        setChoices(durationComboBox, durations);
+        setChoices(eventInformation.eventDurationComboBox, durations);
+    }
+
+    // Quarters with events in them, or the current year's if there are no events yet
+    private static List<String> reportQuarters() {
+        List<String> quarters = tracker.getQuarters();
+        return quarters.isEmpty() ? durationChoices() : quarters;
     }
 
-    public void refreshStudentTable() {
-        studentViewDataModel.refresh();
+    // Every quarter from the first year with events through the current year, plus any quarter in
+    // use whose name is not of the usual form
+    private static List<String> durationChoices() {
+        List<String> used = tracker.getQuarters();
+        int currentYear = Calendar.getInstance().get(Calendar.YEAR);
+        int firstYear = currentYear;
+        int lastYear = currentYear;
+        for (String quarter : used) {
+            int year = Quarters.year(quarter);
+            if (year >= 0) {
+                firstYear = Math.min(firstYear, year);
+                lastYear = Math.max(lastYear, year);
+            }
+        }
+        List<String> choices = Quarters.span(firstYear, lastYear);
+        for (String quarter : used) {
+            if (Quarters.year(quarter) < 0) {
+                choices.add(quarter);
+            }
+        }
+        return choices;
     }
 
-    public void refreshEventTable() {
-        eventViewDataModel.refresh();
+    // Swaps in new choices only when they differ, keeping the selection if it is still offered
+    private static void setChoices(JComboBox<String> comboBox, List<String> choices) {
+        List<String> current = new ArrayList<>();
+        for (int i = 0; i < comboBox.getItemCount(); i++) {
+            current.add(comboBox.getItemAt(i));
+        }
+        if (current.equals(choices)) {
+            return;
+        }
+        Object selected = comboBox.getSelectedItem();
+        DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>(choices.toArray(new String[0]));
+        if (choices.contains(selected)) {
+            model.setSelectedItem(selected);
+        }
+        comboBox.setModel(model);
     }
 
-    public void refreshReportTable() {
-        reportViewDataModel.refreshReportTable();
+    // Computed off the event dispatch thread like the quarterly report, then shown as text
+    private void showRollups() {
+        quarterlyWinnerInformation.rollupButton.setEnabled(false);
+        new SwingWorker<ReportEngine.Report, Void>() {
+            @Override
+            protected ReportEngine.Report doInBackground() {
+                return reportEngine.report();
+            }
+
+            @Override
+            protected void done() {
+                quarterlyWinnerInformation.rollupButton.setEnabled(true);
+                try {
+                    JTextArea text = new JTextArea(get().toString());
+                    text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                    text.setEditable(false);
+                    JScrollPane scrollPane = new JScrollPane(text);
+                    scrollPane.setPreferredSize(new Dimension(640, 400));
+                    JOptionPane.showMessageDialog(MainFrame.this, scrollPane, "Rollups", JOptionPane.PLAIN_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error computing rollups: " + e.getCause());
+                }
+            }
+        }.execute();
     }
 
     public void refreshTextFieldText() {
@@ -600,13 +696,188 @@ public class MainFrame extends JFrame implements ActionListener {
         addStudentOrEventMenu.points.setTextField("enter the points");
     }
 
-    public void refreshAllDetailTables() {
-        detailViewDataModel.refreshTable();
-        eventDetailViewDataModel.refreshTable();
+    // ----------------------- TrackerListener -----------------------
+
+    // Each change touches only the rows showing the changed student or event. Changes made off the
+    // event dispatch thread are handed over to it, since the models may only change there.
+    @Override
+    public void studentAdded(int studentId) {
+        onEdt(() -> {
+            studentViewDataModel.rowInserted(studentId);
+            reportViewDataModel.rowInserted(studentId);
+            eventDetailViewDataModel.rowInserted(studentId);
+        });
+    }
+
+    @Override
+    public void studentRemoved(int studentId) {
+        onEdt(() -> {
+            studentViewDataModel.rowDeleted(studentId);
+            reportViewDataModel.rowDeleted(studentId);
+            eventDetailViewDataModel.rowDeleted(studentId);
+        });
+    }
+
+    @Override
+    public void studentRenamed(int studentId, String oldName, String newName) {
+        onEdt(() -> studentChanged(studentId));
+    }
+
+    @Override
+    public void studentYearChanged(int studentId, int classYear) {
+        onEdt(() -> studentChanged(studentId));
+    }
+
+    @Override
+    public void eventAdded(int eventId) {
+        onEdt(() -> {
+            eventViewDataModel.rowInserted(eventId);
+            detailViewDataModel.rowInserted(eventId);
+            refreshQuarterChoices();
+        });
+    }
+
+    @Override
+    public void eventRemoved(int eventId, int[] attendees) {
+        onEdt(() -> {
+            eventViewDataModel.rowDeleted(eventId);
+            detailViewDataModel.rowDeleted(eventId);
+            attendeesChanged(attendees);
+            refreshQuarterChoices();
+        });
+    }
+
+    @Override
+    public void eventRenamed(int eventId, String oldName, String newName) {
+        onEdt(() -> eventChanged(eventId));
+    }
+
+    @Override
+    public void eventPointsChanged(int eventId, int[] attendees) {
+        onEdt(() -> {
+            eventChanged(eventId);
+            attendeesChanged(attendees);
+        });
+    }
+
+    @Override
+    public void eventDurationChanged(int eventId, String oldDuration, int[] attendees) {
+        onEdt(() -> {
+            eventChanged(eventId);
+            attendeesChanged(attendees);
+            refreshQuarterChoices();
+        });
+    }
+
+    @Override
+    public void registrationAdded(int studentId, int eventId) {
+        onEdt(() -> registrationChanged(studentId, eventId));
+    }
+
+    @Override
+    public void registrationRemoved(int studentId, int eventId) {
+        onEdt(() -> registrationChanged(studentId, eventId));
+    }
+
+    // An import may touch most rows, so every row showing totals or registrations is reloaded
+    @Override
+    public void registrationsImported(int[] studentIds, int[] eventIds) {
+        onEdt(() -> {
+            studentViewDataModel.allRowsUpdated();
+            reportViewDataModel.allRowsUpdated();
+            detailViewDataModel.allRowsUpdated();
+            eventDetailViewDataModel.allRowsUpdated();
+        });
+    }
+
+    private void studentChanged(int studentId) {
+        studentViewDataModel.rowUpdated(studentId);
+        reportViewDataModel.rowUpdated(studentId);
+        eventDetailViewDataModel.rowUpdated(studentId);
+    }
+
+    private void eventChanged(int eventId) {
+        eventViewDataModel.rowUpdated(eventId);
+        detailViewDataModel.rowUpdated(eventId);
+    }
+
+    // The students whose totals moved with an event
+    private void attendeesChanged(int[] attendees) {
+        for (int studentId : attendees) {
+            studentChanged(studentId);
+        }
+    }
+
+    private void registrationChanged(int studentId, int eventId) {
+        studentChanged(studentId);
+        detailViewDataModel.rowUpdated(eventId);
+    }
+
+    private static void onEdt(Runnable update) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            update.run();
+        } else {
+            SwingUtilities.invokeLater(update);
+        }
     }
 
     // ----------------------- Inner Classes -----------------------
 
+    // Loads every row of the report for one quarter, plus the winners, against the live tracker.
+    // The rows are only installed if the table has not changed underneath in the meantime.
+    private class ReportWorker extends SwingWorker<Void, Void> {
+        private static final int PROGRESS_STEP = 1024;
+
+        private final String duration;
+        private final long version;
+        private final int[] ids;
+        private final Object[][] rows;
+        private String topStudent = "";
+        private String randomWinner = "";
+
+        ReportWorker(String duration) {
+            this.duration = duration;
+            this.version = reportViewDataModel.version();
+            this.ids = reportViewDataModel.rowIdsInOrder();
+            this.rows = new Object[ids.length][];
+        }
+
+        @Override
+        protected Void doInBackground() {
+            for (int i = 0; i < ids.length; i++) {
+                if (isCancelled()) {
+                    return null;
+                }
+                rows[i] = reportViewDataModel.loadRow(ids[i], duration);
+                if (i % PROGRESS_STEP == 0) {
+                    setProgress(i * 100 / ids.length);
+                }
+            }
+            Student top = tracker.getTopStudentOfQuarter(duration);
+            Student winner = tracker.getRandomWinner();
+            topStudent = top != null ? top.getName() : "";
+            randomWinner = winner != null ? winner.getName() : "";
+            setProgress(100);
+            return null;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                get();
+                reportViewDataModel.showReport(duration, version, rows);
+                quarterlyWinnerInformation.topStudent.setValue(topStudent);
+                quarterlyWinnerInformation.randomWinner.setValue(randomWinner);
+            } catch (InterruptedException | ExecutionException e) {
+                System.err.println("Error computing report: " + e.getCause());
+            }
+            quarterlyWinnerInformation.progress.setVisible(false);
+        }
+    }
+
     private static class LabeledValue extends JPanel {
         private final JLabel nameLabel = new JLabel();
         private final JLabel valueLabel = new JLabel();
@@ -667,7 +938,7 @@ public class MainFrame extends JFrame implements ActionListener {
 
             JPanel comboBoxDurationPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
             JLabel duration = new JLabel("Duration:");
-            eventDurationComboBox = new JComboBox<>(durationStrings);
+            eventDurationComboBox = new JComboBox<>(durationChoices().toArray(new String[0]));
             eventDurationComboBox.setSelectedIndex(0);
             eventDurationComboBox.setPreferredSize(name.textField.getPreferredSize());
             eventDurationComboBox.setRenderer(new CenteredComboBoxRenderer());
@@ -730,7 +1001,7 @@ public class MainFrame extends JFrame implements ActionListener {
 
             comboBoxDurationPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
             JLabel duration = new JLabel("Duration:");
-            durationComboBox = new JComboBox<>(durationStrings);
+            durationComboBox = new JComboBox<>(durationChoices().toArray(new String[0]));
             durationComboBox.setSelectedIndex(0);
             durationComboBox.setPreferredSize(name.textField.getPreferredSize());
             durationComboBox.setRenderer(new CenteredComboBoxRenderer());
@@ -766,52 +1037,161 @@ public class MainFrame extends JFrame implements ActionListener {
     private static class QuarterlyWinnerInformation extends JPanel {
         public LabeledValue topStudent = new LabeledValue("Top Student");
         public LabeledValue randomWinner = new LabeledValue("Random Winner");
+        public JProgressBar progress = new JProgressBar(0, 100);
+        public JButton rollupButton = new JButton("Rollups");
 
         public QuarterlyWinnerInformation() {
             setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
             setBorder(BorderFactory.createTitledBorder("Winner Information"));
             add(topStudent);
             add(randomWinner);
+            progress.setVisible(false);
+            add(progress);
+            add(rollupButton);
         }
     }
 
     // ----------------------- Table Models -----------------------
 
-    public static class StudentViewDataModel extends AbstractTableModel {
-        private List<Integer> listOfName;
-        public static final String[] COLUMN_FIELDS = {"ID", "Name", "Class Of", "Total Points"};
+    // Table model over a sorted list of ids. A row's values are computed the first time it is shown
+    // and kept until the row is invalidated, so painting and sorting read plain arrays instead of
+    // querying the tracker; changes are announced for the affected rows only.
+    public abstract static class CachedRowModel extends AbstractTableModel {
+        private int[] ids = new int[0];
+        private Object[][] rows = new Object[0][];
+        private int size;
+        // Bumped by every change, so rows computed elsewhere can tell whether they are still current
+        private long version;
+
+        // Ids of all rows, in any order
+        protected abstract Collection<Integer> rowIds();
+
+        // Column values for the row of id
+        protected abstract Object[] loadRow(int id);
+
+        public void reload() {
+            ids = rowIds().stream().mapToInt(Integer::intValue).sorted().toArray();
+            size = ids.length;
+            rows = new Object[size][];
+            version++;
+            fireTableDataChanged();
+        }
 
-        public StudentViewDataModel(StudentTracker studentTracker) {
-            listOfName = new ArrayList<>(studentTracker.students.keySet());
-            Collections.sort(listOfName);
+        public void rowUpdated(int id) {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            if (row >= 0) {
+                rows[row] = null;
+                version++;
+                fireTableRowsUpdated(row, row);
+            }
         }
 
-        public void refresh() {
-            listOfName = new ArrayList<>(tracker.students.keySet());
-            Collections.sort(listOfName);
-            fireTableDataChanged();
+        public void rowInserted(int id) {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            if (row >= 0) {
+                rowUpdated(id);
+                return;
+            }
+            row = -row - 1;
+            if (size == ids.length) {
+                int capacity = Math.max(16, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+            }
+            System.arraycopy(ids, row, ids, row + 1, size - row);
+            System.arraycopy(rows, row, rows, row + 1, size - row);
+            ids[row] = id;
+            rows[row] = null;
+            size++;
+            version++;
+            fireTableRowsInserted(row, row);
+        }
+
+        public void rowDeleted(int id) {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            if (row < 0) {
+                return;
+            }
+            System.arraycopy(ids, row + 1, ids, row, size - row - 1);
+            System.arraycopy(rows, row + 1, rows, row, size - row - 1);
+            rows[--size] = null;
+            version++;
+            fireTableRowsDeleted(row, row);
+        }
+
+        // For changes that touch a column of every row, such as the selected quarter
+        public void allRowsUpdated() {
+            Arrays.fill(rows, 0, size, null);
+            version++;
+            if (size > 0) {
+                fireTableRowsUpdated(0, size - 1);
+            }
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public int[] rowIdsInOrder() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        // Installs rows loaded for rowIdsInOrder() at the given version; false if the model changed since
+        public boolean fillRows(long loadedVersion, Object[][] loaded) {
+            if (loadedVersion != version || loaded.length != size) {
+                return false;
+            }
+            System.arraycopy(loaded, 0, rows, 0, size);
+            version++;
+            if (size > 0) {
+                fireTableRowsUpdated(0, size - 1);
+            }
+            return true;
+        }
+
+        protected int idAt(int row) {
+            return ids[row];
         }
 
         @Override
         public int getRowCount() {
-            return tracker.students.size();
+            return size;
         }
 
         @Override
-        public int getColumnCount() {
-            return COLUMN_FIELDS.length;
+        public Object getValueAt(int row, int col) {
+            Object[] values = rows[row];
+            if (values == null) {
+                values = rows[row] = loadRow(ids[row]);
+            }
+            return values[col];
+        }
+    }
+
+    public static class StudentViewDataModel extends CachedRowModel {
+        public static final String[] COLUMN_FIELDS = {"ID", "Name", "Class Of", "Total Points"};
+
+        public StudentViewDataModel(StudentTracker studentTracker) {
+            reload();
         }
 
         @Override
-        public Object getValueAt(int row, int col) {
-            Student student = tracker.students.get(listOfName.get(row));
-            return switch (col) {
-                case 0 -> student.getId();
-                case 1 -> student.getName();
-                case 2 -> student.getClassYear();
-                case 3 -> tracker.totalPoints(student.getId());
-                default -> null;
-            };
+        protected Collection<Integer> rowIds() {
+            return tracker.students.keySet();
+        }
+
+        @Override
+        protected Object[] loadRow(int id) {
+            Student student = tracker.students.get(id);
+            if (student == null) {
+                return new Object[COLUMN_FIELDS.length];
+            }
+            return new Object[]{student.getId(), student.getName(), student.getClassYear(), tracker.totalPoints(id)};
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_FIELDS.length;
         }
 
         @Override
@@ -829,24 +1209,25 @@ public class MainFrame extends JFrame implements ActionListener {
         }
     }
 
-    public static class EventViewDataModel extends AbstractTableModel {
-        private List<Integer> listOfEvent;
+    public static class EventViewDataModel extends CachedRowModel {
         public static final String[] COLUMN_FIELDS = {"ID", "Name", "Duration", "Points"};
 
         public EventViewDataModel(StudentTracker studentTracker) {
-            listOfEvent = new ArrayList<>(studentTracker.events.keySet());
-            Collections.sort(listOfEvent);
+            reload();
         }
 
-        public void refresh() {
-            listOfEvent = new ArrayList<>(tracker.events.keySet());
-            Collections.sort(listOfEvent);
-            fireTableDataChanged();
+        @Override
+        protected Collection<Integer> rowIds() {
+            return tracker.events.keySet();
         }
 
         @Override
-        public int getRowCount() {
-            return tracker.events.size();
+        protected Object[] loadRow(int id) {
+            Events event = tracker.events.get(id);
+            if (event == null) {
+                return new Object[COLUMN_FIELDS.length];
+            }
+            return new Object[]{event.getId(), event.getName(), event.getDuration(), event.getPoints()};
         }
 
         @Override
@@ -854,18 +1235,6 @@ public class MainFrame extends JFrame implements ActionListener {
             return COLUMN_FIELDS.length;
         }
 
-        @Override
-        public Object getValueAt(int row, int col) {
-            Events event = tracker.events.get(listOfEvent.get(row));
-            return switch (col) {
-                case 0 -> event.getId();
-                case 1 -> event.getName();
-                case 2 -> event.getDuration();
-                case 3 -> event.getPoints();
-                default -> null;
-            };
-        }
-
         @Override
         public String getColumnName(int col) {
             return COLUMN_FIELDS[col];
@@ -881,36 +1250,39 @@ public class MainFrame extends JFrame implements ActionListener {
         }
     }
 
-    public static class DetailViewDataModel extends AbstractTableModel {
-        private List<Integer> listOfRegistration;
-        private List<Integer> listOfEvent;
-        private String selectedTarget;
+    public static class DetailViewDataModel extends CachedRowModel {
+        // Kept as an id so the rows stay valid when the student is renamed
+        private int studentId;
         private final MainFrame mainFrame;
         public static final String[] COLUMN_FIELDS = {"ID", "Name", "Duration", "Points", "Y/N"};
 
         public DetailViewDataModel(String selectedTarget, MainFrame mainFrame) {
-            listOfEvent = new ArrayList<>(tracker.events.keySet());
-            Collections.sort(listOfEvent);
-            this.selectedTarget = selectedTarget;
+            this.studentId = tracker.getIdBasedOnName(selectedTarget);
             this.mainFrame = mainFrame;
-            listOfRegistration = tracker.registration.getOrDefault(tracker.getIdBasedOnName(selectedTarget), new ArrayList<>());
-            Collections.sort(listOfRegistration);
+            reload();
         }
 
+        // Only the Y/N column depends on the student, and only when another student is picked
         public void refresh(String selectedTarget) {
-            this.selectedTarget = selectedTarget;
-            listOfRegistration = tracker.registration.getOrDefault(tracker.getIdBasedOnName(selectedTarget), new ArrayList<>());
-            Collections.sort(listOfRegistration);
+            int id = tracker.getIdBasedOnName(selectedTarget);
+            if (id != studentId) {
+                studentId = id;
+                allRowsUpdated();
+            }
         }
 
-        public void refreshTable() {
-            listOfEvent = new ArrayList<>(tracker.events.keySet());
-            Collections.sort(listOfEvent);
+        @Override
+        protected Collection<Integer> rowIds() {
+            return tracker.events.keySet();
         }
 
         @Override
-        public int getRowCount() {
-            return listOfEvent.size();
+        protected Object[] loadRow(int id) {
+            Events event = tracker.events.get(id);
+            if (event == null) {
+                return new Object[COLUMN_FIELDS.length];
+            }
+            return new Object[]{event.getId(), event.getName(), event.getDuration(), event.getPoints(), registered(event)};
         }
 
         @Override
@@ -918,19 +1290,6 @@ public class MainFrame extends JFrame implements ActionListener {
             return COLUMN_FIELDS.length;
         }
 
-        @Override
-        public Object getValueAt(int row, int col) {
-            Events event = tracker.events.get(listOfEvent.get(row));
-            return switch (col) {
-                case 0 -> event.getId();
-                case 1 -> event.getName();
-                case 2 -> event.getDuration();
-                case 3 -> event.getPoints();
-                case 4 -> registered(event);
-                default -> null;
-            };
-        }
-
         @Override
         public String getColumnName(int col) {
             return COLUMN_FIELDS[col];
@@ -953,70 +1312,61 @@ public class MainFrame extends JFrame implements ActionListener {
 
         @Override
         public void setValueAt(Object value, int row, int col) {
-            Events event = tracker.events.get(listOfEvent.get(row));
+            int eventId = idAt(row);
             if (Boolean.TRUE.equals(value)) {
                 try {
-                    tracker.register(tracker.getIdBasedOnName(selectedTarget), event.getId());
+                    tracker.register(studentId, eventId);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
             } else {
                 try {
-                    tracker.dropoff(tracker.getIdBasedOnName(selectedTarget), event.getId());
+                    tracker.dropoff(studentId, eventId);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
             }
-            mainFrame.refreshDetails(selectedTarget);
-            fireTableCellUpdated(row, col);
+            mainFrame.refreshDetails(tracker.students.get(studentId).getName());
         }
 
         private boolean registered(Events event) {
-            return tracker.registration.getOrDefault(tracker.getIdBasedOnName(selectedTarget), new ArrayList<>())
-                    .contains(event.getId());
+            return tracker.isRegistered(studentId, event.getId());
         }
     }
 
-    public static class EventDetailViewDataModel extends AbstractTableModel {
-        private List<Integer> listOfRegistration;
-        private List<Integer> listOfStudent;
-        private String selectedTarget;
+    public static class EventDetailViewDataModel extends CachedRowModel {
+        // Kept as an id so the rows stay valid when the event is renamed
+        private int eventId;
         private final MainFrame mainFrame;
         public static final String[] COLUMN_FIELDS = {"ID", "Name", "Class Year", "Total Points", "Y/N"};
 
         public EventDetailViewDataModel(String selectedTarget, MainFrame mainFrame) {
-            listOfStudent = new ArrayList<>(tracker.students.keySet());
-            Collections.sort(listOfStudent);
-            this.selectedTarget = selectedTarget;
+            this.eventId = tracker.getEventIdBasedOnName(selectedTarget);
             this.mainFrame = mainFrame;
-            listOfRegistration = new ArrayList<>();
-            for (Map.Entry<Integer, List<Integer>> entry : tracker.registration.entrySet()) {
-                if (entry.getValue().contains(tracker.getEventIdBasedOnName(selectedTarget))) {
-                    listOfRegistration.add(entry.getKey());
-                }
-            }
-            Collections.sort(listOfRegistration);
+            reload();
         }
 
+        // Only the Y/N column depends on the event, and only when another event is picked
         public void refresh(String selectedTarget) {
-            this.selectedTarget = selectedTarget;
-            listOfRegistration = new ArrayList<>();
-            for (Map.Entry<Integer, List<Integer>> entry : tracker.registration.entrySet()) {
-                if (entry.getValue().contains(tracker.getEventIdBasedOnName(selectedTarget))) {
-                    listOfRegistration.add(entry.getKey());
-                }
+            int id = tracker.getEventIdBasedOnName(selectedTarget);
+            if (id != eventId) {
+                eventId = id;
+                allRowsUpdated();
             }
-            Collections.sort(listOfRegistration);
         }
 
-        public void refreshTable() {
-            listOfStudent = new ArrayList<>(tracker.students.keySet());
-            Collections.sort(listOfStudent);
+        @Override
+        protected Collection<Integer> rowIds() {
+            return tracker.students.keySet();
         }
 
         @Override
-        public int getRowCount() {
-            return listOfStudent.size();
+        protected Object[] loadRow(int id) {
+            Student student = tracker.students.get(id);
+            if (student == null) {
+                return new Object[COLUMN_FIELDS.length];
+            }
+            return new Object[]{student.getId(), student.getName(), student.getClassYear(), tracker.totalPoints(id), registered(student)};
         }
 
         @Override
@@ -1024,19 +1374,6 @@ public class MainFrame extends JFrame implements ActionListener {
             return COLUMN_FIELDS.length;
         }
 
-        @Override
-        public Object getValueAt(int row, int col) {
-            Student student = tracker.students.get(listOfStudent.get(row));
-            return switch (col) {
-                case 0 -> student.getId();
-                case 1 -> student.getName();
-                case 2 -> student.getClassYear();
-                case 3 -> tracker.totalPoints(student.getId());
-                case 4 -> registered(student);
-                default -> null;
-            };
-        }
-
         @Override
         public String getColumnName(int col) {
             return COLUMN_FIELDS[col];
@@ -1059,69 +1396,67 @@ public class MainFrame extends JFrame implements ActionListener {
 
         @Override
         public void setValueAt(Object value, int row, int col) {
-            Student student = tracker.students.get(listOfStudent.get(row));
+            int studentId = idAt(row);
             if (Boolean.TRUE.equals(value)) {
                 try {
-                    tracker.register(student.getId(), tracker.getEventIdBasedOnName(selectedTarget));
+                    tracker.register(studentId, eventId);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
             } else {
                 try {
-                    tracker.dropoff(student.getId(), tracker.getEventIdBasedOnName(selectedTarget));
+                    tracker.dropoff(studentId, eventId);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
             }
-            mainFrame.refreshEventDetails(selectedTarget);
-            fireTableCellUpdated(row, col);
+            mainFrame.refreshEventDetails(tracker.events.get(eventId).getName());
         }
 
         private boolean registered(Student student) {
-            return tracker.registration.getOrDefault(student.getId(), new ArrayList<>())
-                    .contains(tracker.getEventIdBasedOnName(selectedTarget));
+            return tracker.isRegistered(student.getId(), eventId);
         }
     }
 
-    public static class ReportViewDataModel extends AbstractTableModel {
-        private List<Integer> listOfName;
+    public static class ReportViewDataModel extends CachedRowModel {
         private String duration = "2021Q1";
         public static final String[] COLUMN_FIELDS = {"ID", "Name", "Class Of", "Total Points"};
 
         public ReportViewDataModel(StudentTracker studentTracker) {
-            listOfName = new ArrayList<>(studentTracker.students.keySet());
-            Collections.sort(listOfName);
+            reload();
         }
 
-        public void refresh(String duration) {
+        // Takes rows computed in the background; if the table moved on meanwhile they are dropped
+        // and the rows are loaded lazily for the new quarter instead
+        public void showReport(String duration, long loadedVersion, Object[][] loaded) {
             this.duration = duration;
+            if (!fillRows(loadedVersion, loaded)) {
+                allRowsUpdated();
+            }
         }
 
-        public void refreshReportTable() {
-            listOfName = new ArrayList<>(tracker.students.keySet());
-            Collections.sort(listOfName);
+        @Override
+        protected Collection<Integer> rowIds() {
+            return tracker.students.keySet();
         }
 
         @Override
-        public int getRowCount() {
-            return tracker.students.size();
+        protected Object[] loadRow(int id) {
+            return loadRow(id, duration);
         }
 
-        @Override
-        public int getColumnCount() {
-            return COLUMN_FIELDS.length;
+        // Reads only the tracker, so it may run on any thread
+        public Object[] loadRow(int id, String duration) {
+            Student student = tracker.students.get(id);
+            if (student == null) {
+                return new Object[COLUMN_FIELDS.length];
+            }
+            return new Object[]{student.getId(), student.getName(), student.getClassYear(), tracker.getQuarterlyPersonReport(duration, id)};
         }
 
         @Override
-        public Object getValueAt(int row, int col) {
-            Student student = tracker.students.get(listOfName.get(row));
-            return switch (col) {
-                case 0 -> student.getId();
-                case 1 -> student.getName();
-                case 2 -> student.getClassYear();
-                case 3 -> tracker.getQuarterlyPersonReport(duration, student.getId());
-                default -> null;
-            };
+        public int getColumnCount() {
+            return COLUMN_FIELDS.length;
         }
 
         @Override
@@ -0,0 +1,213 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide timers and counters for the tracker, the id generator and the journal. A timer is a
+// log-linear latency histogram: values below 32 ns get a bucket each, and every power of two above
+// that is split into 32 buckets, so a percentile is accurate to about 3% and recording a value is
+// one array increment, with nothing allocated. Each metric is registered as an MXBean under
+// "ParticipationSystem:type=Timer|Counter,name=<name>" when first created, and with
+// -DmetricsDumpSeconds=<n> all of them are printed every n seconds.
+public final class Metrics {
+    private static final String DOMAIN = "ParticipationSystem";
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    private static final long DUMP_SECONDS = Long.getLong("metricsDumpSeconds", 0);
+
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+    static {
+        if (DUMP_SECONDS > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(() -> System.out.print(report()), DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public interface TimerMXBean {
+        long getCount();
+
+        double getMeanMicros();
+
+        double getP50Micros();
+
+        double getP99Micros();
+
+        double getP999Micros();
+
+        double getMaxMicros();
+    }
+
+    public interface CounterMXBean {
+        long getValue();
+    }
+
+    public static final class Timer implements TimerMXBean {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Timer() {
+        }
+
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        // Records the time since a System.nanoTime() taken at the start of the operation
+        public void stop(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        // Upper bound of the bucket holding the given fraction of the values, in nanoseconds
+        public long percentile(double fraction) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += buckets.get(i);
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= Math.max(rank, 1)) {
+                    return Math.min(highestValue(i), maxNanos.get());
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            long n = count.sum();
+            return n > 0 ? totalNanos.sum() / 1000.0 / n : 0;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return percentile(0.5) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return percentile(0.99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return percentile(0.999) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return maxNanos.get() / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count %d, mean %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                    getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+        }
+    }
+
+    public static final class Counter implements CounterMXBean {
+        private final LongAdder value = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        @Override
+        public long getValue() {
+            return value.sum();
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(getValue());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    // The timer with the given name, created and registered the first time it is asked for.
+    // Callers keep it in a static field so the hot path never looks it up.
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> register("Timer", key, new Timer()));
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> register("Counter", key, new Counter()));
+    }
+
+    // Every metric, one per line, sorted by name
+    public static String report() {
+        StringBuilder text = new StringBuilder("Metrics\n");
+        timers.forEach((name, timer) -> text.append(String.format("  %-28s %s%n", name, timer)));
+        counters.forEach((name, counter) -> text.append(String.format("  %-28s %s%n", name, counter)));
+        return text.toString();
+    }
+
+    private static <M> M register(String type, String name, M metric) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metric,
+                    new ObjectName(DOMAIN + ":type=" + type + ",name=" + name));
+        } catch (JMException e) {
+            System.err.println("Error registering metric " + name + ": " + e.getMessage());
+        }
+        return metric;
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lowest = (1L << exponent) | (sub << (exponent - SUB_BITS));
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
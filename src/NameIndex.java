@@ -0,0 +1,78 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Hash index from a display name to the id carrying it. With normalize set, names that differ
+// only in case or in runs of whitespace resolve to the same id. Lookups never block.
+//
+// A name can be carried by more than one id, for instance after a load or a rename. The ids are
+// kept in the order they were registered and a lookup returns the earliest one still present, so
+// removing it makes the name resolve to the next holder instead of to nothing.
+public class NameIndex {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // name key -> ids carrying it, oldest first; replaced, never modified, so readers need no lock
+    private final Map<String, int[]> ids = new ConcurrentHashMap<>();
+    private final boolean normalize;
+
+    public NameIndex(boolean normalize) {
+        this.normalize = normalize;
+    }
+
+    // Id registered under the name, or -1
+    public int get(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int[] holders = ids.get(key(name));
+        return holders != null ? holders[0] : -1;
+    }
+
+    public boolean contains(String name) {
+        return get(name) != -1;
+    }
+
+    // Adds id as a holder of the name; lookups keep returning an earlier holder while it exists
+    public void put(String name, int id) {
+        ids.compute(key(name), (key, holders) -> {
+            if (holders == null) {
+                return new int[]{id};
+            }
+            for (int holder : holders) {
+                if (holder == id) {
+                    return holders;
+                }
+            }
+            int[] grown = Arrays.copyOf(holders, holders.length + 1);
+            grown[holders.length] = id;
+            return grown;
+        });
+    }
+
+    // Drops id as a holder of the name
+    public void remove(String name, int id) {
+        ids.computeIfPresent(key(name), (key, holders) -> {
+            for (int i = 0; i < holders.length; i++) {
+                if (holders[i] == id) {
+                    if (holders.length == 1) {
+                        return null;
+                    }
+                    int[] shrunk = new int[holders.length - 1];
+                    System.arraycopy(holders, 0, shrunk, 0, i);
+                    System.arraycopy(holders, i + 1, shrunk, i, holders.length - i - 1);
+                    return shrunk;
+                }
+            }
+            return holders;
+        });
+    }
+
+    private String key(String name) {
+        if (!normalize) {
+            return name;
+        }
+        return WHITESPACE.matcher(name.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Registry of the quarters events take place in. Each distinct name, normally "<year>Q<n>", is
+// interned into a small dense int key in order of first appearance, so per-quarter state can live
+// in arrays indexed by the key and quarters compare as ints. Keys only mean something within one
+// run; files keep storing the names.
+public final class Quarters {
+    private static final Map<String, Integer> keys = new ConcurrentHashMap<>();
+    // key -> name; replaced by a longer copy when a quarter is added
+    private static volatile String[] names = new String[0];
+
+    // Chronological for "<year>Q<n>" names; any other names sort after them by name
+    public static final Comparator<String> CHRONOLOGICAL = Comparator
+            .comparingInt((String name) -> year(name) < 0 ? Integer.MAX_VALUE : year(name) * 4 + quarter(name))
+            .thenComparing(Comparator.naturalOrder());
+
+    private Quarters() {
+    }
+
+    // Key of the quarter, registering it the first time it is seen
+    public static int key(String name) {
+        Integer key = keys.get(name);
+        return key != null ? key : register(name);
+    }
+
+    // Key of the quarter, or -1 if no event has used it
+    public static int find(String name) {
+        Integer key = keys.get(name);
+        return key != null ? key : -1;
+    }
+
+    public static String name(int key) {
+        return names[key];
+    }
+
+    // Number of keys handed out so far; every key is below it
+    public static int count() {
+        return names.length;
+    }
+
+    // Year of a "<year>Q<n>" name, or -1 for a name of any other form
+    public static int year(String name) {
+        if (name.length() != 6 || name.charAt(4) != 'Q' || name.charAt(5) < '1' || name.charAt(5) > '4') {
+            return -1;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            year = year * 10 + c - '0';
+        }
+        return year;
+    }
+
+    // All four quarters of each year from fromYear to toYear, in order
+    public static List<String> span(int fromYear, int toYear) {
+        List<String> span = new ArrayList<>();
+        for (int year = fromYear; year <= toYear; year++) {
+            for (int quarter = 1; quarter <= 4; quarter++) {
+                span.add(year + "Q" + quarter);
+            }
+        }
+        return span;
+    }
+
+    private static int quarter(String name) {
+        return name.charAt(5) - '1';
+    }
+
+    private static synchronized int register(String name) {
+        Integer existing = keys.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        String[] grown = Arrays.copyOf(names, names.length + 1);
+        int key = names.length;
+        grown[key] = name;
+        // The name must be readable before the key is handed out
+        names = grown;
+        keys.put(name, key);
+        return key;
+    }
+}
@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs registrations and dropoffs on virtual threads, one queue per student. Operations on
+// different students run in parallel; operations on the same student are applied one at a time in
+// the order they were submitted, so a register followed by a dropoff never ends up reversed. A
+// student's queue exists only while it has work, and is drained by a single virtual thread.
+//
+// At most `capacity` operations can be waiting or running at once. A submit beyond that waits up
+// to the given timeout for room and then fails with RejectedExecutionException, so a flood of
+// requests slows its callers down instead of growing the backlog without bound.
+public class RegistrationExecutor implements AutoCloseable {
+    // Time from submit to completion, queueing included
+    private static final Metrics.Timer REGISTER_TIME = Metrics.timer("executor.register");
+    private static final Metrics.Timer DROPOFF_TIME = Metrics.timer("executor.dropoff");
+    private static final Metrics.Counter REGISTER_FAILED = Metrics.counter("executor.register.failed");
+    private static final Metrics.Counter DROPOFF_FAILED = Metrics.counter("executor.dropoff.failed");
+
+    private final StudentTracker tracker;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<Integer, Lane> lanes = new ConcurrentHashMap<>();
+    private final Semaphore backlog;
+    private final int capacity;
+    private final long timeoutMillis;
+    private volatile boolean closed;
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private interface Operation {
+        void apply() throws IOException;
+    }
+
+    private static final class Task {
+        final Operation operation;
+        final Metrics.Timer timer;
+        final Metrics.Counter failed;
+        final long submitted = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Task(Operation operation, Metrics.Timer timer, Metrics.Counter failed) {
+            this.operation = operation;
+            this.timer = timer;
+            this.failed = failed;
+        }
+
+        void finish(boolean ok) {
+            timer.stop(submitted);
+            if (!ok) {
+                failed.increment();
+            }
+        }
+    }
+
+    // Pending work of one student; only touched inside lanes.compute
+    private static final class Lane {
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+    }
+
+    public static final class OperationStats {
+        public final long count;
+        public final long failed;
+        public final long averageMicros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        // Read from the process-wide timer, so these match what JMX and the metrics dump show
+        private OperationStats(Metrics.Timer timer, Metrics.Counter failed) {
+            this.count = timer.getCount();
+            this.failed = failed.getValue();
+            this.averageMicros = (long) timer.getMeanMicros();
+            this.p99Micros = (long) timer.getP99Micros();
+            this.maxMicros = (long) timer.getMaxMicros();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ops, %d failed, avg %d us, p99 %d us, max %d us",
+                    count, failed, averageMicros, p99Micros, maxMicros);
+        }
+    }
+
+    public static final class Stats {
+        // Operations waiting or running right now
+        public final int depth;
+        public final int maxDepth;
+        public final int capacity;
+        // Students with queued work
+        public final int activeStudents;
+        public final long rejected;
+        public final OperationStats register;
+        public final OperationStats dropoff;
+
+        private Stats(int depth, int maxDepth, int capacity, int activeStudents, long rejected,
+                      OperationStats register, OperationStats dropoff) {
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.capacity = capacity;
+            this.activeStudents = activeStudents;
+            this.rejected = rejected;
+            this.register = register;
+            this.dropoff = dropoff;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("depth %d (max %d of %d), %d students active, %d rejected%n  register: %s%n  dropoff: %s",
+                    depth, maxDepth, capacity, activeStudents, rejected, register, dropoff);
+        }
+    }
+
+    public RegistrationExecutor(StudentTracker tracker, int capacity, long timeoutMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.tracker = tracker;
+        this.capacity = capacity;
+        this.timeoutMillis = timeoutMillis;
+        this.backlog = new Semaphore(capacity);
+    }
+
+    // The futures complete once the change is durable in the journal
+    public CompletableFuture<Void> register(int studentId, int eventId) {
+        return submit(studentId, () -> tracker.registerDurably(studentId, eventId), REGISTER_TIME, REGISTER_FAILED);
+    }
+
+    public CompletableFuture<Void> dropoff(int studentId, int eventId) {
+        return submit(studentId, () -> tracker.dropoffDurably(studentId, eventId), DROPOFF_TIME, DROPOFF_FAILED);
+    }
+
+    public Stats stats() {
+        return new Stats(capacity - backlog.availablePermits(), maxDepth.get(), capacity, lanes.size(),
+                rejected.sum(), new OperationStats(REGISTER_TIME, REGISTER_FAILED),
+                new OperationStats(DROPOFF_TIME, DROPOFF_FAILED));
+    }
+
+    // Stops taking work and waits for what was already submitted
+    @Override
+    public void close() {
+        closed = true;
+        threads.close();
+    }
+
+    private CompletableFuture<Void> submit(int studentId, Operation operation, Metrics.Timer timer,
+                                           Metrics.Counter failed) {
+        if (closed) {
+            throw new RejectedExecutionException("Executor is closed");
+        }
+        try {
+            if (!backlog.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new RejectedExecutionException("Backlog full: " + capacity + " operations pending");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for backlog room", e);
+        }
+        maxDepth.accumulateAndGet(capacity - backlog.availablePermits(), Math::max);
+
+        Task task = new Task(operation, timer, failed);
+        boolean[] start = new boolean[1];
+        lanes.compute(studentId, (id, lane) -> {
+            if (lane == null) {
+                lane = new Lane();
+                start[0] = true;
+            }
+            lane.queue.add(task);
+            return lane;
+        });
+        if (start[0]) {
+            try {
+                threads.execute(() -> drain(studentId));
+            } catch (RejectedExecutionException e) {
+                // Closed in between; fail whatever is queued for the student
+                drain(studentId, e);
+            }
+        }
+        return task.done;
+    }
+
+    private void drain(int studentId) {
+        Task task;
+        while ((task = next(studentId)) != null) {
+            boolean ok = false;
+            try {
+                task.operation.apply();
+                ok = true;
+                task.done.complete(null);
+            } catch (IOException e) {
+                task.done.completeExceptionally(new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                task.done.completeExceptionally(e);
+            } finally {
+                task.finish(ok);
+                backlog.release();
+            }
+        }
+    }
+
+    private void drain(int studentId, RuntimeException cause) {
+        Task task;
+        while ((task = next(studentId)) != null) {
+            task.done.completeExceptionally(cause);
+            task.finish(false);
+            backlog.release();
+        }
+    }
+
+    // Takes the student's next task, or removes its lane when there is none left. A lane is only
+    // removed by the thread draining it, so a submit either lands in a lane that will still be
+    // drained or creates a new one and starts a drain itself.
+    private Task next(int studentId) {
+        Task[] next = new Task[1];
+        lanes.computeIfPresent(studentId, (id, lane) -> {
+            next[0] = lane.queue.poll();
+            return next[0] != null ? lane : null;
+        });
+        return next[0];
+    }
+}
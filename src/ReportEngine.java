@@ -0,0 +1,342 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Rollups over the whole tracker: points per class year and quarter, participation per event and
+// event popularity per quarter. They all come out of a single pass over a snapshot of the tracker,
+// so a report never mixes states from before and after a change: with the columnar store
+// (-DcolumnarStore=true) a copy of its columns, scanned per student row, otherwise a copy of every
+// registration. The pass can be split across the common ForkJoinPool, with one tally per task
+// merged at the end. The last report is cached together with the tracker version it was computed
+// at, so asking again is free until something changes.
+public class ReportEngine {
+    private final StudentTracker tracker;
+    private final boolean parallel;
+    private volatile Report cached;
+
+    // Points, students and participants of one class year; points and participants per quarter key
+    private static final class YearTally {
+        int students;
+        long[] points;
+        int[] participants;
+
+        YearTally(int quarters) {
+            points = new long[quarters];
+            participants = new int[quarters];
+        }
+    }
+
+    // Everything one pass accumulates; tallies of disjoint sets of students are merged by adding
+    private static final class Tally {
+        final IntObjectMap<YearTally> years = new IntObjectMap<>();
+        final int[] attendees;
+        // Per quarter key, the last student counted as participating in it
+        final int[] counted;
+        final int quarters;
+        int students;
+
+        Tally(int events, int quarters) {
+            attendees = new int[events];
+            counted = new int[quarters];
+            Arrays.fill(counted, -1);
+            this.quarters = quarters;
+        }
+
+        void merge(Tally other) {
+            students += other.students;
+            for (int i = 0; i < attendees.length; i++) {
+                attendees[i] += other.attendees[i];
+            }
+            other.years.forEach((classYear, theirs) -> {
+                YearTally ours = years.computeIfAbsent(classYear, k -> new YearTally(quarters));
+                ours.students += theirs.students;
+                for (int q = 0; q < quarters; q++) {
+                    ours.points[q] += theirs.points[q];
+                    ours.participants[q] += theirs.participants[q];
+                }
+            });
+        }
+    }
+
+    public static final class ClassYearRollup {
+        public final int classYear;
+        public final int students;
+        // Indexed like Report.quarters
+        public final long[] totalPoints;
+        public final double[] averagePoints;
+        // Students of the class year registered for at least one event of the quarter
+        public final int[] participants;
+
+        private ClassYearRollup(int classYear, int students, long[] totalPoints, double[] averagePoints, int[] participants) {
+            this.classYear = classYear;
+            this.students = students;
+            this.totalPoints = totalPoints;
+            this.averagePoints = averagePoints;
+            this.participants = participants;
+        }
+    }
+
+    public static final class EventParticipation {
+        public final int eventId;
+        public final String name;
+        public final String quarter;
+        public final int attendees;
+        // Share of all students registered for the event
+        public final double rate;
+
+        private EventParticipation(int eventId, String name, String quarter, int attendees, double rate) {
+            this.eventId = eventId;
+            this.name = name;
+            this.quarter = quarter;
+            this.attendees = attendees;
+            this.rate = rate;
+        }
+    }
+
+    public static final class QuarterPopularity {
+        public final String quarter;
+        public final int events;
+        public final int registrations;
+        // Most attended event of the quarter, or null if it has no registrations
+        public final String topEvent;
+        public final int topAttendees;
+
+        private QuarterPopularity(String quarter, int events, int registrations, String topEvent, int topAttendees) {
+            this.quarter = quarter;
+            this.events = events;
+            this.registrations = registrations;
+            this.topEvent = topEvent;
+            this.topAttendees = topAttendees;
+        }
+    }
+
+    public static final class Report {
+        // Tracker version the report was computed at
+        public final long version;
+        public final int students;
+        // Quarters with events, in chronological order
+        public final List<String> quarters;
+        public final List<ClassYearRollup> classYears;
+        // Most attended first
+        public final List<EventParticipation> events;
+        // In the order of quarters
+        public final List<QuarterPopularity> popularity;
+
+        private Report(long version, int students, List<String> quarters, List<ClassYearRollup> classYears,
+                       List<EventParticipation> events, List<QuarterPopularity> popularity) {
+            this.version = version;
+            this.students = students;
+            this.quarters = quarters;
+            this.classYears = classYears;
+            this.events = events;
+            this.popularity = popularity;
+        }
+
+        // Plain text tables, for a dialog or a log
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append("Points per class year (total / average / participants)\n");
+            text.append(String.format("%-8s%10s", "Class", "Students"));
+            for (String quarter : quarters) {
+                text.append(String.format("%24s", quarter));
+            }
+            text.append('\n');
+            for (ClassYearRollup row : classYears) {
+                text.append(String.format("%-8d%10d", row.classYear, row.students));
+                for (int q = 0; q < quarters.size(); q++) {
+                    text.append(String.format("%24s", String.format("%d / %.1f / %d",
+                            row.totalPoints[q], row.averagePoints[q], row.participants[q])));
+                }
+                text.append('\n');
+            }
+            text.append("\nEvent popularity per quarter\n");
+            text.append(String.format("%-8s%8s%15s  %s%n", "Quarter", "Events", "Registrations", "Most attended"));
+            for (QuarterPopularity row : popularity) {
+                text.append(String.format("%-8s%8d%15d  %s%n", row.quarter, row.events, row.registrations,
+                        row.topEvent != null ? row.topEvent + " (" + row.topAttendees + ")" : "-"));
+            }
+            text.append("\nParticipation per event\n");
+            text.append(String.format("%-24s%-8s%10s%8s%n", "Event", "Quarter", "Attendees", "Rate"));
+            for (EventParticipation row : events) {
+                text.append(String.format("%-24s%-8s%10d%7.1f%%%n", row.name, row.quarter, row.attendees, row.rate * 100));
+            }
+            return text.toString();
+        }
+    }
+
+    public ReportEngine(StudentTracker tracker, boolean parallel) {
+        this.tracker = tracker;
+        this.parallel = parallel;
+    }
+
+    // The cached report if the tracker has not changed since, otherwise a fresh one. The version is
+    // read before the snapshot is taken, so a report that already holds a later change is
+    // recomputed on the next call rather than kept.
+    public Report report() {
+        long version = tracker.version();
+        Report report = cached;
+        if (report == null || report.version != version) {
+            report = compute(version);
+            cached = report;
+        }
+        return report;
+    }
+
+    private Report compute(long version) {
+        List<Events> eventList;
+        Tally tally;
+        StudentTracker.ColumnSnapshot columns = tracker.columnSnapshot();
+        if (columns != null) {
+            eventList = columns.events;
+            tally = scanColumns(columns);
+        } else {
+            StudentTracker.Snapshot snapshot = tracker.snapshot();
+            eventList = snapshot.events;
+            tally = scanRegistrations(snapshot);
+        }
+        int quarters = tally.quarters;
+        int[] eventQuarters = eventList.stream().mapToInt(Events::getQuarter).toArray();
+
+        List<String> quarterNames = quartersOf(eventList);
+        int[] quarterKeys = quarterNames.stream().mapToInt(Quarters::find).toArray();
+
+        List<ClassYearRollup> classYears = new ArrayList<>();
+        int[] years = tally.years.keys();
+        Arrays.sort(years);
+        for (int classYear : years) {
+            YearTally year = tally.years.get(classYear);
+            long[] totals = new long[quarterKeys.length];
+            double[] averages = new double[quarterKeys.length];
+            int[] participants = new int[quarterKeys.length];
+            for (int q = 0; q < quarterKeys.length; q++) {
+                int key = quarterKeys[q];
+                if (key >= 0 && key < quarters) {
+                    totals[q] = year.points[key];
+                    averages[q] = (double) year.points[key] / year.students;
+                    participants[q] = year.participants[key];
+                }
+            }
+            classYears.add(new ClassYearRollup(classYear, year.students, totals, averages, participants));
+        }
+
+        List<EventParticipation> participation = new ArrayList<>(eventList.size());
+        for (int i = 0; i < eventList.size(); i++) {
+            Events event = eventList.get(i);
+            double rate = tally.students > 0 ? (double) tally.attendees[i] / tally.students : 0;
+            participation.add(new EventParticipation(event.getId(), event.getName(), event.getDuration(), tally.attendees[i], rate));
+        }
+        participation.sort(Comparator.comparingInt((EventParticipation row) -> row.attendees).reversed()
+                .thenComparingInt(row -> row.eventId));
+
+        int[] eventsPerQuarter = new int[quarters];
+        int[] registrationsPerQuarter = new int[quarters];
+        int[] topPerQuarter = new int[quarters];
+        Arrays.fill(topPerQuarter, -1);
+        for (int i = 0; i < eventList.size(); i++) {
+            int quarter = eventQuarters[i];
+            eventsPerQuarter[quarter]++;
+            registrationsPerQuarter[quarter] += tally.attendees[i];
+            int top = topPerQuarter[quarter];
+            // Ties go to the lowest id, as in the participation list, whatever order the events came in
+            if (tally.attendees[i] > 0 && (top < 0 || tally.attendees[i] > tally.attendees[top]
+                    || tally.attendees[i] == tally.attendees[top] && eventList.get(i).getId() < eventList.get(top).getId())) {
+                topPerQuarter[quarter] = i;
+            }
+        }
+        List<QuarterPopularity> popularity = new ArrayList<>(quarterNames.size());
+        for (int q = 0; q < quarterNames.size(); q++) {
+            int key = quarterKeys[q];
+            if (key < 0 || key >= quarters) {
+                popularity.add(new QuarterPopularity(quarterNames.get(q), 0, 0, null, 0));
+                continue;
+            }
+            int top = topPerQuarter[key];
+            popularity.add(new QuarterPopularity(quarterNames.get(q), eventsPerQuarter[key], registrationsPerQuarter[key],
+                    top >= 0 ? eventList.get(top).getName() : null, top >= 0 ? tally.attendees[top] : 0));
+        }
+        return new Report(version, tally.students, quarterNames, classYears, participation, popularity);
+    }
+
+    // One pass over every student's registrations
+    private Tally scanRegistrations(StudentTracker.Snapshot snapshot) {
+        List<Events> eventList = snapshot.events;
+        // event id -> index in eventList + 1
+        IntIntMap eventIndex = new IntIntMap(eventList.size());
+        int[] eventPoints = new int[eventList.size()];
+        int[] eventQuarters = new int[eventList.size()];
+        for (int i = 0; i < eventList.size(); i++) {
+            Events event = eventList.get(i);
+            eventIndex.put(event.getId(), i + 1);
+            eventPoints[i] = event.getPoints();
+            eventQuarters[i] = event.getQuarter();
+        }
+        int quarters = Quarters.count();
+        List<Student> students = snapshot.students;
+
+        IntStream pass = IntStream.range(0, students.size());
+        if (parallel) {
+            pass = pass.parallel();
+        }
+        return pass.collect(() -> new Tally(eventList.size(), quarters), (t, i) -> {
+            Student student = students.get(i);
+            int studentId = student.getId();
+            YearTally year = t.years.computeIfAbsent(student.getClassYear(), k -> new YearTally(quarters));
+            year.students++;
+            t.students++;
+            IntSet registered = snapshot.registration.get(studentId);
+            if (registered == null) {
+                return;
+            }
+            registered.forEach(eventId -> {
+                int index = eventIndex.get(eventId) - 1;
+                if (index < 0) {
+                    return;
+                }
+                int quarter = eventQuarters[index];
+                t.attendees[index]++;
+                year.points[quarter] += eventPoints[index];
+                if (t.counted[quarter] != studentId) {
+                    t.counted[quarter] = studentId;
+                    year.participants[quarter]++;
+                }
+            });
+        }, Tally::merge);
+    }
+
+    // With the columnar store the points and registration counts are already summed per student
+    // and quarter, so the pass reads a few ints per student row, and the attendee counts come with
+    // the copy
+    private Tally scanColumns(StudentTracker.ColumnSnapshot snapshot) {
+        ColumnStore columns = snapshot.columns;
+        int quarters = Quarters.count();
+        IntStream pass = IntStream.range(0, columns.studentCount());
+        if (parallel) {
+            pass = pass.parallel();
+        }
+        Tally tally = pass.collect(() -> new Tally(columns.eventCount(), quarters), (t, row) -> {
+            YearTally year = t.years.computeIfAbsent(columns.classYear(row), k -> new YearTally(quarters));
+            year.students++;
+            t.students++;
+            for (int quarter = 0; quarter < quarters; quarter++) {
+                year.points[quarter] += columns.quarterPoints(row, quarter);
+                if (columns.quarterRegistrations(row, quarter) > 0) {
+                    year.participants[quarter]++;
+                }
+            }
+        }, Tally::merge);
+        System.arraycopy(snapshot.attendees, 0, tally.attendees, 0, snapshot.attendees.length);
+        return tally;
+    }
+
+    // Quarters that at least one of the events takes place in, in chronological order
+    private static List<String> quartersOf(List<Events> events) {
+        BitSet used = new BitSet();
+        for (Events event : events) {
+            used.set(event.getQuarter());
+        }
+        List<String> quarters = new ArrayList<>();
+        used.stream().forEach(key -> quarters.add(Quarters.name(key)));
+        quarters.sort(Quarters.CHRONOLOGICAL);
+        return quarters;
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Crash-safe replacement of snapshot files. A new generation is written to <file>.tmp and forced
+// to disk; the current file is then renamed to <file>.prev and the new one renamed into place, so
+// at every point a complete generation is on disk under one of the two names. CSV snapshots end
+// with a trailer line "#<records>,<crc32>,<generation>" covering everything before it, which the
+// loaders skip. Every compaction writes a new generation number, so at startup choose() can pick
+// the newest generation that all the files of a snapshot have intact, current or previous, and
+// never loads students of one generation with registrations of another. Files without a trailer,
+// written before it existed or by hand, are taken as they are, as generation 0.
+public final class SnapshotFiles {
+    private static final byte TRAILER = '#';
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    // Checks one generation of a file
+    public interface Verifier {
+        Generation check(Path file) throws IOException;
+    }
+
+    // What a Verifier found: the file's generation if it is intact, otherwise what is wrong
+    public static final class Generation {
+        public final long generation;
+        public final String problem;
+
+        private Generation(long generation, String problem) {
+            this.generation = generation;
+            this.problem = problem;
+        }
+
+        public static Generation intact(long generation) {
+            return new Generation(generation, null);
+        }
+
+        public static Generation damaged(String problem) {
+            return new Generation(-1, problem);
+        }
+
+        public boolean isIntact() {
+            return problem == null;
+        }
+    }
+
+    // The generation chosen by choose(), and the newest intact one found in any file
+    public static final class Choice {
+        public final long generation;
+        public final long newest;
+
+        private Choice(long generation, long newest) {
+            this.generation = generation;
+            this.newest = newest;
+        }
+    }
+
+    // Writes one CSV snapshot. Lines go through line(), and commit() adds the trailer and puts the
+    // file in place; closing without committing discards the partial file. A compaction killed
+    // before commit() leaves only the .tmp file behind, and the snapshot files untouched.
+    public static final class Writer implements Closeable {
+        private final String fileName;
+        private final long generation;
+        private final Path tempFile;
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private final BufferedWriter writer;
+        private long records;
+        private long bytes;
+        private boolean committed;
+
+        private Writer(String fileName, long generation) throws IOException {
+            this.fileName = fileName;
+            this.generation = generation;
+            tempFile = temp(fileName);
+            channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), StandardCharsets.UTF_8));
+        }
+
+        public void line(String line) throws IOException {
+            writer.write(line);
+            writer.write('\n');
+            records++;
+        }
+
+        public void commit() throws IOException {
+            writer.flush();
+            String trailer = (char) TRAILER + Long.toString(records) + "," + Long.toHexString(crc.getValue())
+                    + "," + generation + "\n";
+            ByteBuffer buffer = ByteBuffer.wrap(trailer.getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+            bytes = channel.size();
+            channel.close();
+            committed = true;
+            install(tempFile, fileName);
+        }
+
+        // Size of the committed file
+        public long bytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    private SnapshotFiles() {
+    }
+
+    public static Writer create(String fileName, long generation) throws IOException {
+        return new Writer(fileName, generation);
+    }
+
+    public static Path temp(String fileName) {
+        return Paths.get(fileName + ".tmp");
+    }
+
+    public static Path previous(String fileName) {
+        return Paths.get(fileName + ".prev");
+    }
+
+    // Forces a fully written temp file to disk and makes it the current generation
+    public static void replace(Path tempFile, String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        install(tempFile, fileName);
+    }
+
+    // Picks the newest generation that every one of the files has intact, as the current file or
+    // the previous one, and copies the previous file back into place wherever that is the one
+    // chosen. A file missing under both names is left to the caller, to treat as empty or missing
+    // as before; if every file is missing the generation is 0.
+    public static Choice choose(Verifier verifier, String... fileNames) throws IOException {
+        // Previous files are always older than current ones, so when every current file is intact
+        // at one generation that is the choice, and the previous files are never read
+        Map<Path, Generation> checked = new HashMap<>();
+        long common = -1;
+        for (String fileName : fileNames) {
+            Path current = Paths.get(fileName);
+            Generation generation = Files.exists(current) ? verifier.check(current) : null;
+            if (generation == null || !generation.isIntact() || common >= 0 && generation.generation != common) {
+                common = -1;
+                break;
+            }
+            checked.put(current, generation);
+            common = generation.generation;
+        }
+        if (common >= 0) {
+            return new Choice(common, common);
+        }
+        // file name -> generation -> the intact file holding it; the current file wins a tie
+        Map<String, Map<Long, Path>> intact = new LinkedHashMap<>();
+        // file name -> what the current file is, for the message when it is not the one loaded
+        Map<String, String> states = new HashMap<>();
+        List<String> problems = new ArrayList<>();
+        long newest = 0;
+        for (String fileName : fileNames) {
+            for (Path file : List.of(previous(fileName), Paths.get(fileName))) {
+                if (!Files.exists(file)) {
+                    continue;
+                }
+                Map<Long, Path> found = intact.computeIfAbsent(fileName, key -> new HashMap<>());
+                Generation generation = checked.containsKey(file) ? checked.get(file) : verifier.check(file);
+                if (generation.isIntact()) {
+                    found.put(generation.generation, file);
+                    newest = Math.max(newest, generation.generation);
+                } else {
+                    problems.add(file + " is " + generation.problem);
+                }
+                states.put(fileName, generation.isIntact() ? "of generation " + generation.generation : generation.problem);
+            }
+        }
+        long chosen = intact.isEmpty() ? 0 : -1;
+        for (Map<Long, Path> found : intact.values()) {
+            for (long generation : found.keySet()) {
+                if (generation > chosen && intact.values().stream().allMatch(other -> other.containsKey(generation))) {
+                    chosen = generation;
+                }
+            }
+        }
+        if (chosen < 0) {
+            throw new IOException("Snapshot " + String.join(", ", fileNames) + " has no generation intact in every file"
+                    + (problems.isEmpty() ? "" : ": " + String.join("; ", problems)));
+        }
+        for (Map.Entry<String, Map<Long, Path>> file : intact.entrySet()) {
+            Path source = file.getValue().get(chosen);
+            Path current = Paths.get(file.getKey());
+            if (!source.equals(current)) {
+                System.err.println("Snapshot " + current + " is " + states.getOrDefault(file.getKey(), "missing")
+                        + ", restoring generation " + chosen + " from the previous file");
+                restore(source, current);
+            }
+        }
+        return new Choice(chosen, newest);
+    }
+
+    // Checks a CSV snapshot against its trailer
+    public static Generation verifyCsv(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long trailerStart = lastLineStart(channel, size);
+            if (trailerStart < 0) {
+                return Generation.intact(0);
+            }
+            String[] trailer = readAscii(channel, trailerStart + 1, size).trim().split(",");
+            long expectedRecords;
+            long expectedCrc;
+            long generation;
+            try {
+                expectedRecords = Long.parseLong(trailer[0]);
+                expectedCrc = Long.parseLong(trailer[1], 16);
+                generation = trailer.length > 2 ? Long.parseLong(trailer[2]) : 0;
+            } catch (RuntimeException e) {
+                return Generation.damaged("damaged (unreadable trailer)");
+            }
+            CRC32 crc = new CRC32();
+            long records = 0;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            long position = 0;
+            while (position < trailerStart) {
+                buffer.clear().limit((int) Math.min(BUFFER_BYTES, trailerStart - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                buffer.flip();
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        records++;
+                    }
+                }
+                crc.update(buffer);
+                position += read;
+            }
+            if (records != expectedRecords) {
+                return Generation.damaged("damaged (" + records + " of " + expectedRecords + " records)");
+            }
+            return crc.getValue() == expectedCrc ? Generation.intact(generation) : Generation.damaged("damaged (checksum mismatch)");
+        }
+    }
+
+    private static void install(Path tempFile, String fileName) throws IOException {
+        Path current = Paths.get(fileName);
+        if (Files.exists(current)) {
+            Files.move(current, previous(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(tempFile, current, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(current);
+    }
+
+    // Copies a file over another one without ever leaving a partial file under the target's name
+    private static void restore(Path source, Path target) throws IOException {
+        Path tempFile = Paths.get(target + ".tmp");
+        Files.copy(source, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target);
+    }
+
+    // Makes the renames durable; not every platform can open a directory, and there it is skipped
+    private static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    // Offset of the trailer line, or -1 if the file does not end with one
+    private static long lastLineStart(FileChannel channel, long size) throws IOException {
+        if (size == 0) {
+            return -1;
+        }
+        int tail = (int) Math.min(size, 64);
+        ByteBuffer buffer = ByteBuffer.allocate(tail);
+        channel.read(buffer, size - tail);
+        // Skip the newline that ends the last line
+        int i = tail - 1;
+        if (buffer.get(i) == '\n') {
+            i--;
+        }
+        while (i >= 0 && buffer.get(i) != '\n') {
+            i--;
+        }
+        long start = size - tail + i + 1;
+        if (i < 0 && size > tail) {
+            // The last line is longer than any trailer
+            return -1;
+        }
+        return buffer.get(i + 1) == TRAILER ? start : -1;
+    }
+
+    private static String readAscii(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        channel.read(buffer, from);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Replays a mixed register/dropoff workload against a tracker for a fixed time, from several
+// threads and with the same skewed event popularity as DataGenerator. Throughput and heap use are
+// printed every few seconds. At the end the totals are checked against the registrations, the
+// tracker is closed and reopened, and the reopened state must match what was there before.
+public class SoakTest {
+    private static final int REPORT_SECONDS = 5;
+    private static final int CHECKED_STUDENTS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: SoakTest <data dir> <seconds> [threads] [register percent]");
+            System.exit(2);
+        }
+        String dataDir = args[0];
+        long seconds = Long.parseLong(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int registerPercent = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+
+        long start = System.nanoTime();
+        StudentTracker tracker = new StudentTracker(dataDir);
+        System.out.printf("Loaded %d students and %d events in %d ms%n",
+                tracker.students.size(), tracker.events.size(), (System.nanoTime() - start) / 1_000_000);
+        int[] studentIds = tracker.students.keySet().stream().mapToInt(Integer::intValue).toArray();
+        int[] eventIds = tracker.events.keySet().stream().mapToInt(Integer::intValue).toArray();
+        if (studentIds.length == 0 || eventIds.length == 0) {
+            System.err.println("No students or events in " + dataDir);
+            System.exit(1);
+        }
+        DataGenerator.Zipf popularity = new DataGenerator.Zipf(eventIds.length, 1.0);
+
+        AtomicLong operations = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                while (System.nanoTime() < deadline) {
+                    int studentId = studentIds[random.nextInt(studentIds.length)];
+                    int eventId = eventIds[popularity.next(random)];
+                    try {
+                        if (random.nextInt(100) < registerPercent) {
+                            tracker.register(studentId, eventId);
+                        } else {
+                            tracker.dropoff(studentId, eventId);
+                        }
+                    } catch (IOException e) {
+                        if (failures.getAndIncrement() == 0) {
+                            System.err.println("Error in soak workload: " + e.getMessage());
+                        }
+                    }
+                    operations.incrementAndGet();
+                }
+            }, "soak-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long last = 0;
+        while (workers.get(0).isAlive()) {
+            workers.get(0).join(REPORT_SECONDS * 1000L);
+            long done = operations.get();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("%,d ops (%,d/s), heap %d MB%n", done, (done - last) / REPORT_SECONDS,
+                    (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+            last = done;
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<Integer, Integer> before = checkTotals(tracker, studentIds);
+        tracker.close();
+        StudentTracker reopened = new StudentTracker(dataDir);
+        Map<Integer, Integer> after = checkTotals(reopened, studentIds);
+        reopened.close();
+        if (!before.equals(after)) {
+            fail("Totals changed across a restart");
+        }
+        if (failures.get() > 0) {
+            fail(failures.get() + " operations failed");
+        }
+        System.out.printf("Soak passed: %,d operations from %d threads%n", operations.get(), threads);
+    }
+
+    // Compares the running totals of a sample of students with a sum over their registrations
+    private static Map<Integer, Integer> checkTotals(StudentTracker tracker, int[] studentIds) {
+        Map<Integer, Integer> totals = new HashMap<>();
+        for (int i = 0; i < Math.min(studentIds.length, CHECKED_STUDENTS); i++) {
+            int studentId = studentIds[i];
+            int sum = 0;
+            for (int eventId : tracker.getRegisteredEvents(studentId)) {
+                sum += tracker.events.get(eventId).getPoints();
+            }
+            if (sum != tracker.totalPoints(studentId)) {
+                fail("Total of student " + studentId + " is " + tracker.totalPoints(studentId) + ", registrations add up to " + sum);
+            }
+            totals.put(studentId, sum);
+        }
+        return totals;
+    }
+
+    private static void fail(String message) {
+        System.err.println("Soak failed: " + message);
+        System.exit(1);
+    }
+}
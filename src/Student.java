@@ -1,6 +1,6 @@
 public class Student {
-    private String name;
-    private int classYear;//class of 202*
+    private volatile String name;
+    private volatile int classYear;//class of 202*
     private final int id;
 
     public Student(int id, String name, int classYear) {
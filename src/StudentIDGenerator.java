@@ -1,48 +1,238 @@
 import java.io.*;
-import java.util.*;
+import java.nio.file.*;
 
+// Hands out the ids shared by students and events. Ids below a cursor have all been handed out
+// at some point; the cursor walks a bitmap of used ids, and ids released behind it go on a free
+// list, so an allocation never retries and costs O(1) amortized however full the space gets.
+// Every allocation and release is appended to the usedIDs file as its own line (a release as
+// "-id"), and the file is rewritten only once released ids make up most of it.
 public class StudentIDGenerator {
-    private static final int ID_LENGTH = 4;
-    private static final int MAX_TRIES = 100;
-    private static final Random RANDOM = new Random();
-    public static final Set<Integer> usedIDs = new HashSet<>();
-    private static final String FILENAME = "data\\usedIDs";
+    // Number of decimal digits in an id; ids range over [0, 10^ID_LENGTH)
+    private static final int ID_LENGTH = Integer.getInteger("idLength", 4);
+    private static final int MAX_ID = (int) Math.min(Integer.MAX_VALUE, (long) Math.pow(10, ID_LENGTH));
+    // Bitmap pages are allocated on first use so wide ids cost memory only where ids exist
+    private static final int PAGE_BITS = 1 << 16;
+    private static final int PAGE_WORDS = PAGE_BITS / 64;
+    private static final Metrics.Counter GENERATED = Metrics.counter("ids.generated");
+    private static final Metrics.Counter RELEASED = Metrics.counter("ids.released");
+    // Released ids found taken again when popped off the free list; the only retries allocation does
+    private static final Metrics.Counter STALE_FREE_IDS = Metrics.counter("ids.staleFreeSkips");
 
-    static {
+    private final String fileName;
+    private final long[][] pages = new long[(MAX_ID + PAGE_BITS - 1) / PAGE_BITS][];
+    private int[] freeList = new int[16];
+    private int freeCount;
+    private int cursor;
+    private int used;
+    // Lines in the file, counting releases, to decide when to rewrite it
+    private int fileLines;
+    private BufferedWriter appender;
+
+    // Each tracker keeps its ids in its own data directory
+    public StudentIDGenerator(String fileName) {
+        this.fileName = fileName;
         loadUsedIDs();
     }
 
-    public static int generateID() {
-        int maxValue = (int) Math.pow(10, ID_LENGTH); // e.g., 10^4 = 10000
-        for (int i = 0; i < MAX_TRIES; i++) {
-            int id = RANDOM.nextInt(maxValue); // generates a number between 0 and 9999
-            if (usedIDs.add(id)) { // returns true if the id was not already present
-                saveUsedIDs();
-                return id;
+    public synchronized int generateID() {
+        int id = nextFree();
+        if (id == -1) {
+            throw new IllegalStateException("No unused " + ID_LENGTH + "-digit IDs left");
+        }
+        setUsed(id);
+        append(Integer.toString(id));
+        GENERATED.increment();
+        return id;
+    }
+
+    // Returns a removed student's or event's id to the pool
+    public synchronized void release(int id) {
+        if (!isUsed(id)) {
+            return;
+        }
+        clearUsed(id);
+        // Ids at or past the cursor are found by the cursor itself
+        if (id < cursor) {
+            pushFree(id);
+        }
+        append("-" + id);
+        RELEASED.increment();
+        if (fileLines > 2 * used + 1024) {
+            saveUsedIDs();
+        }
+    }
+
+    public synchronized boolean isUsed(int id) {
+        if (id < 0 || id >= MAX_ID) {
+            return false;
+        }
+        long[] page = pages[id / PAGE_BITS];
+        return page != null && (page[(id % PAGE_BITS) >>> 6] & (1L << id)) != 0;
+    }
+
+    // Marks an id found in the data as taken, for ids the file lost or never had
+    public synchronized void reserve(int id) {
+        if (id < 0 || id >= MAX_ID || isUsed(id)) {
+            return;
+        }
+        setUsed(id);
+        append(Integer.toString(id));
+    }
+
+    public synchronized int usedCount() {
+        return used;
+    }
+
+    // Rewrites the file with just the ids in use. The old file is kept as the previous generation
+    // until the new one is on disk.
+    public synchronized void saveUsedIDs() {
+        long start = System.nanoTime();
+        Path tempFile = SnapshotFiles.temp(fileName);
+        try {
+            closeAppender();
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
+                for (int p = 0; p < pages.length; p++) {
+                    if (pages[p] == null) {
+                        continue;
+                    }
+                    for (int w = 0; w < PAGE_WORDS; w++) {
+                        long word = pages[p][w];
+                        while (word != 0) {
+                            writer.write(Integer.toString(p * PAGE_BITS + w * 64 + Long.numberOfTrailingZeros(word)));
+                            writer.newLine();
+                            word &= word - 1;
+                        }
+                    }
+                }
             }
+            long bytes = Files.size(tempFile);
+            SnapshotFiles.replace(tempFile, fileName);
+            fileLines = used;
+            Metrics.timer("save.usedIDs").stop(start);
+            Metrics.counter("save.usedIDs.bytes").add(bytes);
+        } catch (IOException e) {
+            System.err.println("Error writing used IDs to file: " + e.getMessage());
         }
-        throw new IllegalStateException("Could not generate unique ID after " + MAX_TRIES + " tries");
     }
 
-    private static void loadUsedIDs() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILENAME))) {
+    // Accepts the plain one-id-per-line files written before releases were logged. Uses the
+    // previous generation if a rewrite was interrupted between its renames; the file is appended
+    // to after a rewrite, so it carries no trailer and only a missing file falls back.
+    private void loadUsedIDs() {
+        try {
+            SnapshotFiles.choose(file -> SnapshotFiles.Generation.intact(0), fileName);
+        } catch (IOException e) {
+            System.err.println("Error reading used IDs from file: " + e.getMessage());
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                usedIDs.add(Integer.parseInt(line.trim()));
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                fileLines++;
+                try {
+                    if (line.startsWith("-")) {
+                        int id = Integer.parseInt(line.substring(1));
+                        if (isUsed(id)) {
+                            clearUsed(id);
+                        }
+                    } else {
+                        int id = Integer.parseInt(line);
+                        if (id >= 0 && id < MAX_ID && !isUsed(id)) {
+                            setUsed(id);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    System.err.println("Bad used ID line: " + line);
+                }
             }
-        } catch (IOException | NumberFormatException e) {
+        } catch (IOException e) {
             System.err.println("Error reading used IDs from file: " + e.getMessage());
         }
+        // Every free id starts out ahead of the cursor, so the free list starts empty
     }
 
-    public static void saveUsedIDs() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILENAME))) {
-            for (int id : usedIDs) {
-                writer.write(Integer.toString(id));
-                writer.newLine();
+    private int nextFree() {
+        while (cursor < MAX_ID) {
+            long[] page = pages[cursor / PAGE_BITS];
+            if (page == null) {
+                return cursor++;
             }
+            int offset = cursor % PAGE_BITS;
+            long free = ~page[offset >>> 6] & (-1L << offset);
+            if (free != 0) {
+                int id = cursor - (offset & 63) + Long.numberOfTrailingZeros(free);
+                cursor = id + 1;
+                if (id < MAX_ID) {
+                    return id;
+                }
+                break;
+            }
+            cursor += 64 - (offset & 63);
+        }
+        cursor = MAX_ID;
+        while (freeCount > 0) {
+            int id = freeList[--freeCount];
+            // Skips ids taken again since they were released
+            if (!isUsed(id)) {
+                return id;
+            }
+            STALE_FREE_IDS.increment();
+        }
+        return -1;
+    }
+
+    private void setUsed(int id) {
+        long[] page = pages[id / PAGE_BITS];
+        if (page == null) {
+            page = pages[id / PAGE_BITS] = new long[PAGE_WORDS];
+        }
+        page[(id % PAGE_BITS) >>> 6] |= 1L << id;
+        used++;
+    }
+
+    private void clearUsed(int id) {
+        pages[id / PAGE_BITS][(id % PAGE_BITS) >>> 6] &= ~(1L << id);
+        used--;
+    }
+
+    private void pushFree(int id) {
+        if (freeCount == freeList.length) {
+            int[] grown = new int[freeList.length << 1];
+            System.arraycopy(freeList, 0, grown, 0, freeCount);
+            freeList = grown;
+        }
+        freeList[freeCount++] = id;
+    }
+
+    private void append(String line) {
+        try {
+            if (appender == null) {
+                appender = Files.newBufferedWriter(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            appender.write(line);
+            appender.newLine();
+            appender.flush();
+            fileLines++;
+        } catch (IOException e) {
+            System.err.println("Error writing used IDs to file: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            closeAppender();
         } catch (IOException e) {
             System.err.println("Error writing used IDs to file: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private void closeAppender() throws IOException {
+        if (appender != null) {
+            appender.close();
+            appender = null;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Append-only log of tracker mutations. Every record is one comma separated line whose first
+// field names the operation, so a mutation costs one appended line instead of a file rewrite.
+// Records are handed to a writer thread through a bounded queue; the writer drains whatever
+// has piled up and commits it as a group, with one write and one fsync, so appending never waits
+// on the disk. Callers that need their record on disk wait for its batch with awaitDurable; under
+// load many callers share each fsync. While several callers are waiting, the writer lingers
+// briefly for more records before committing a batch that is not yet full (-DgroupCommitMicros,
+// default 200); a lone record is committed at once. The fsync is skipped when run with
+// -DjournalSync=false.
+//
+// A segment starts with a "#<generation>" line naming the snapshot generation its records follow.
+// Compaction moves the active segment aside as journal.old and, once the snapshot holding its
+// records is on disk, keeps it as journal.prev until the next compaction succeeds, so a damaged
+// snapshot can fall back to the previous generation without losing those records.
+public class StudentJournal implements Closeable {
+    // Records waiting for the writer thread; a full queue makes append block
+    private static final int QUEUE_CAPACITY = 4096;
+    // Most records committed by one write and fsync
+    private static final int MAX_BATCH = QUEUE_CAPACITY;
+    private static final long GROUP_COMMIT_NANOS = Long.getLong("groupCommitMicros", 200) * 1000;
+    private static final boolean SYNC = Boolean.parseBoolean(System.getProperty("journalSync", "true"));
+    private static final Metrics.Timer COMMIT_TIME = Metrics.timer("journal.commit");
+    private static final Metrics.Counter COMMITTED_RECORDS = Metrics.counter("journal.records");
+    // Control markers travel through the queue so they stay ordered with the records
+    private static final String ROTATE = new String("rotate");
+    private static final String STOP = new String("stop");
+
+    private final Path activeFile;
+    private final Path rotatedFile;
+    private final Path previousFile;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Object appendLock = new Object();
+    private final Thread writerThread;
+    // Only used by the writer thread once the constructor returns
+    private FileChannel channel;
+    private BufferedWriter writer;
+    private int size;
+    private long appended;
+    private long durable;
+    // Callers blocked in awaitDurable; the writer only lingers for company when there are several
+    private volatile int waiters;
+    private IOException failure;
+    private boolean closed;
+    // Generation written at the head of the segment the next rotation starts
+    private volatile long rotationGeneration;
+
+    // A journal started from scratch follows the snapshot of the given generation
+    public StudentJournal(String fileName, long generation) throws IOException {
+        activeFile = Paths.get(fileName);
+        rotatedFile = Paths.get(fileName + ".old");
+        previousFile = Paths.get(fileName + ".prev");
+        boolean fresh = !Files.exists(activeFile) && !Files.exists(rotatedFile) && !Files.exists(previousFile);
+        size = countRecords(activeFile);
+        writer = openWriter();
+        if (fresh) {
+            writer.write("#" + generation);
+            writer.newLine();
+            commit();
+        }
+        writerThread = new Thread(this::writeLoop, "journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Queues a record and returns its sequence number for awaitDurable
+    public long append(String record) throws IOException {
+        synchronized (appendLock) {
+            size++;
+            return enqueue(record);
+        }
+    }
+
+    // Number of records appended since the last rotation
+    public int size() {
+        synchronized (appendLock) {
+            return size;
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0 && !Files.exists(rotatedFile);
+    }
+
+    // Blocks until the record with the given sequence number has been written to the file, and
+    // forced to the disk unless journalSync is off
+    public synchronized void awaitDurable(long sequence) throws IOException {
+        waiters++;
+        try {
+            while (durable < sequence) {
+                checkFailure();
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal");
+                }
+            }
+        } finally {
+            waiters--;
+        }
+        checkFailure();
+    }
+
+    // Blocks until every record appended so far has been written to the file
+    public void flush() throws IOException {
+        long sequence;
+        synchronized (appendLock) {
+            sequence = appended;
+        }
+        awaitDurable(sequence);
+    }
+
+    // Generation of the snapshot the active segment follows, or -1 if it has no header
+    public long generation() throws IOException {
+        return segmentGeneration(activeFile);
+    }
+
+    // Replays every record the snapshot of the given generation does not hold. A segment ends where
+    // the next one starts, so the kept and rotated segments are skipped once the snapshot is as new
+    // as the segment after them; the active one is always replayed. A kept segment that had to be
+    // replayed is folded into the rotated one, so it stays on disk until a newer snapshot is.
+    public void replay(long generation, Consumer<String[]> handler) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        for (Path file : List.of(previousFile, rotatedFile, activeFile)) {
+            if (Files.exists(file)) {
+                segments.add(file);
+            }
+        }
+        int first = segments.size() - 1;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            long next = segmentGeneration(segments.get(i + 1));
+            if (next < 0 || next > generation) {
+                first = i;
+                break;
+            }
+        }
+        long start = segmentGeneration(segments.get(first));
+        if (start > generation) {
+            throw new IOException("Journal starts after snapshot generation " + generation + " (at " + start
+                    + "), the changes in between are lost");
+        }
+        for (Path file : segments.subList(first, segments.size())) {
+            replayFile(file, handler);
+        }
+        if (segments.get(first).equals(previousFile)) {
+            reclaimPrevious();
+        }
+    }
+
+    // Moves the active records aside so a snapshot of the given generation can absorb them while
+    // new records keep going to a fresh file. Returns once every record appended before it is in
+    // the rotated file.
+    public void rotate(long generation) throws IOException {
+        long sequence;
+        synchronized (appendLock) {
+            rotationGeneration = generation;
+            sequence = enqueue(ROTATE);
+            size = 0;
+        }
+        awaitDurable(sequence);
+    }
+
+    // Called once the records of the rotated segment are contained in the snapshot files. The
+    // segment replaces the kept one, which the previous snapshot generation no longer needs.
+    public void keepRotated() throws IOException {
+        if (Files.exists(rotatedFile)) {
+            Files.move(rotatedFile, previousFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Writes out everything still queued and stops the writer thread
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        synchronized (appendLock) {
+            sequence = enqueue(STOP);
+            closed = true;
+        }
+        awaitDurable(sequence);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long enqueue(String item) throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        checkFailure();
+        try {
+            // Re-check for a dead writer while waiting for room, or a full queue would block forever
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while appending to the journal");
+        }
+        return ++appended;
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        long written = 0;
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                gather(batch);
+                boolean stop = false;
+                for (String record : batch) {
+                    if (record == ROTATE) {
+                        rotateFiles();
+                    } else if (record == STOP) {
+                        stop = true;
+                    } else {
+                        writer.write(record);
+                        writer.newLine();
+                    }
+                }
+                long start = System.nanoTime();
+                commit();
+                COMMIT_TIME.stop(start);
+                COMMITTED_RECORDS.add(batch.size());
+                written += batch.size();
+                batch.clear();
+                markDurable(written);
+                if (stop) {
+                    writer.close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Journal writer interrupted"));
+        }
+    }
+
+    // Waits up to the group commit window for more records, unless the batch is full, ends with a
+    // control marker, or at most one caller is waiting for it
+    private void gather(List<String> batch) throws InterruptedException {
+        if (waiters < 2) {
+            return;
+        }
+        long deadline = System.nanoTime() + GROUP_COMMIT_NANOS;
+        while (batch.size() < MAX_BATCH && !isMarker(batch.get(batch.size() - 1))) {
+            long remaining = deadline - System.nanoTime();
+            String record = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (record == null) {
+                return;
+            }
+            batch.add(record);
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+        }
+    }
+
+    private static boolean isMarker(String record) {
+        return record == ROTATE || record == STOP;
+    }
+
+    private void commit() throws IOException {
+        writer.flush();
+        if (SYNC) {
+            channel.force(false);
+        }
+    }
+
+    // A leftover rotated segment from an unfinished compaction is extended rather than replaced
+    private void rotateFiles() throws IOException {
+        commit();
+        writer.close();
+        if (Files.exists(rotatedFile)) {
+            Files.write(rotatedFile, Files.readAllBytes(activeFile), StandardOpenOption.APPEND);
+            Files.delete(activeFile);
+        } else {
+            Files.move(activeFile, rotatedFile);
+        }
+        writer = openWriter();
+        writer.write("#" + rotationGeneration);
+        writer.newLine();
+    }
+
+    // Puts the kept segment in front of the rotated one, whose records follow it. Until the old
+    // kept file is deleted both start with the same generation, and replay skips the kept one.
+    private void reclaimPrevious() throws IOException {
+        Path tempFile = Paths.get(rotatedFile + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            Files.copy(previousFile, out);
+            if (Files.exists(rotatedFile)) {
+                Files.copy(rotatedFile, out);
+            }
+        }
+        try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            tempChannel.force(true);
+        }
+        Files.move(tempFile, rotatedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(previousFile);
+    }
+
+    private static long segmentGeneration(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line = reader.readLine();
+            try {
+                return line != null && line.startsWith("#") ? Long.parseLong(line.substring(1).trim()) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    private synchronized void markDurable(long sequence) {
+        durable = sequence;
+        notifyAll();
+    }
+
+    private synchronized void fail(IOException e) {
+        failure = e;
+        notifyAll();
+    }
+
+    private synchronized void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Journal writer failed", failure);
+        }
+    }
+
+    private BufferedWriter openWriter() throws IOException {
+        channel = FileChannel.open(activeFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+    }
+
+    private static int countRecords(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static void replayFile(Path file, Consumer<String[]> handler) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    handler.accept(line.split(","));
+                } catch (RuntimeException e) {
+                    // A torn trailing record from a crash mid-append ends up here
+                    System.out.println("Bad journal line: " + line);
+                }
+            }
+        }
+    }
+}
@@ -1,165 +1,784 @@
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public class StudentTracker {
-    private static final String STUDENT_FILE = "data\\student";
-    private static final String EVENT_FILE = "data\\event";
-    private static final String PARTICIPATION_FILE = "data\\participation";
+    private static final String DATA_DIR = "data";
+    // Journal records accumulated before they are folded into fresh snapshot files
+    private static final int COMPACTION_THRESHOLD = 10000;
+    // Name lookups ignore case and repeated whitespace when run with -DnormalizeNames=true
+    private static final boolean NORMALIZE_NAMES = Boolean.getBoolean("normalizeNames");
+    // Number of lock stripes registration state is split into; a power of two
+    private static final int STRIPES = 64;
+    // Registrations an import validates and applies per hold of the structure lock
+    private static final int IMPORT_BATCH = 4096;
+    // CSV files at least this large are parsed in parallel, unless run with -DparallelLoad=false
+    private static final long PARALLEL_LOAD_BYTES = 4 << 20;
+    private static final boolean PARALLEL_LOAD = Boolean.parseBoolean(System.getProperty("parallelLoad", "true"));
+    // Keeps a ColumnStore next to the maps for array-scan rollups; run with -DcolumnarStore=true
+    private static final boolean COLUMNAR_STORE = Boolean.getBoolean("columnarStore");
+
+    private static final Metrics.Timer REGISTER_TIME = Metrics.timer("register");
+    private static final Metrics.Timer DROPOFF_TIME = Metrics.timer("dropoff");
+    private static final Metrics.Timer TOP_STUDENT_TIME = Metrics.timer("topStudentOfQuarter");
+    private static final Metrics.Timer COMPACTION_TIME = Metrics.timer("compaction");
+
+    private final String studentFile;
+    private final String eventFile;
+    private final String participationFile;
+    private final String journalFile;
+    // Binary replacement for the three CSV snapshots, used instead of them whenever it exists
+    private final String snapshotFile;
 
     public Map<Integer, Student> students;
     public Map<Integer, Events> events;
-    public Map<Integer, List<Integer>> registration;
+    // student id -> ids of the events the student is registered for, plus the student's point total
+    private final Stripe[] studentStripes = newStripes();
+    // Reverse of registration: event id -> ids of the students registered for it
+    private final Stripe[] eventStripes = newStripes();
+    // Ranked point totals indexed by quarter key, kept in step with registration; null for a
+    // quarter nobody has registered in. Replaced by a longer copy when a new quarter shows up.
+    private volatile Leaderboard[] leaderboards = new Leaderboard[0];
+    private final Object leaderboardLock = new Object();
+    // Columnar mirror of the numeric fields, or null when not enabled
+    private final ColumnStore columns = COLUMNAR_STORE ? new ColumnStore() : null;
+    private final NameIndex studentNames = new NameIndex(NORMALIZE_NAMES);
+    private final NameIndex eventNames = new NameIndex(NORMALIZE_NAMES);
+    private final List<TrackerListener> listeners = new CopyOnWriteArrayList<>();
+    // Bumped by every change made through the public methods, for callers caching derived data
+    private final AtomicLong version = new AtomicLong();
+
+    private final StudentJournal journal;
+    private final StudentIDGenerator ids;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Future<?> compaction;
+    private volatile boolean binarySnapshot;
+    // Newest snapshot generation on disk or attempted; every compaction writes the next one.
+    // Guarded by the structure write lock.
+    private long generation;
+
+    // register and dropoff hold the read side plus the student's stripe, so they run in parallel
+    // for different students. Everything that touches several students, the student/event maps
+    // or the journal segments holds the write side. Reads take neither.
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+    // Registration state for the ids hashing to one stripe. Its maps only change under the write
+    // lock; readers try an optimistic read first and repeat it under the read lock if a writer got
+    // in between (a read racing a table resize may also throw, and is repeated the same way).
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        final IntObjectMap<IntSet> sets = new IntObjectMap<>();
+        // Running point totals, only used by student stripes
+        final IntIntMap totals = new IntIntMap();
+
+        int readInt(IntSupplier reader) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    int value = reader.getAsInt();
+                    if (lock.validate(stamp)) {
+                        return value;
+                    }
+                } catch (RuntimeException e) {
+                    // Torn read, retried below
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return reader.getAsInt();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        <T> T read(Supplier<T> reader) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    T value = reader.get();
+                    if (lock.validate(stamp)) {
+                        return value;
+                    }
+                } catch (RuntimeException e) {
+                    // Torn read, retried below
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return reader.get();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void write(Runnable writer) {
+            long stamp = lock.writeLock();
+            try {
+                writer.run();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    // Copy of the columnar store plus the events and their attendee counts, indexed by event row
+    public static final class ColumnSnapshot {
+        public final ColumnStore columns;
+        public final List<Events> events;
+        public final int[] attendees;
+
+        private ColumnSnapshot(ColumnStore columns, List<Events> events, int[] attendees) {
+            this.columns = columns;
+            this.events = events;
+            this.attendees = attendees;
+        }
+    }
+
+    // Point-in-time copy of the tracker, detached from later mutations
+    public static final class Snapshot {
+        public final List<Student> students;
+        public final List<Events> events;
+        // student id -> ids of the events the student is registered for
+        public final IntObjectMap<IntSet> registration;
+
+        private Snapshot(List<Student> students, List<Events> events, IntObjectMap<IntSet> registration) {
+            this.students = students;
+            this.events = events;
+            this.registration = registration;
+        }
+    }
+
+    // Counts reported by a bulk import
+    public static final class ImportResult {
+        public final int accepted;
+        // Already registered, before the import or earlier in it
+        public final int duplicates;
+        // Unknown student or event, or a malformed line
+        public final int rejected;
+
+        private ImportResult(int accepted, int duplicates, int rejected) {
+            this.accepted = accepted;
+            this.duplicates = duplicates;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public String toString() {
+            return accepted + " accepted, " + duplicates + " duplicates, " + rejected + " rejected";
+        }
+    }
 
     public StudentTracker() throws IOException {
-        students = new HashMap<>();
-        events = new HashMap<>();
-        registration = new HashMap<>();
+        this(DATA_DIR);
+    }
+
+    // Keeps its files in dataDir, so tools and benchmarks can work on a copy of the data
+    public StudentTracker(String dataDir) throws IOException {
+        studentFile = dataDir + File.separator + "student";
+        eventFile = dataDir + File.separator + "event";
+        participationFile = dataDir + File.separator + "participation";
+        journalFile = dataDir + File.separator + "journal";
+        snapshotFile = dataDir + File.separator + "snapshot";
+        students = new ConcurrentHashMap<>();
+        events = new ConcurrentHashMap<>();
+        ids = new StudentIDGenerator(dataDir + File.separator + "usedIDs");
 
-        loadStudents(STUDENT_FILE);
-        loadEvents(EVENT_FILE);
-        loadParticipations(PARTICIPATION_FILE);
+        // A crash between the two renames of a snapshot replacement leaves only the previous generation
+        binarySnapshot = Files.exists(Paths.get(snapshotFile)) || Files.exists(SnapshotFiles.previous(snapshotFile));
+        long start = System.nanoTime();
+        SnapshotFiles.Choice choice;
+        if (binarySnapshot) {
+            choice = SnapshotFiles.choose(BinarySnapshot::verify, snapshotFile);
+            start = lap("load.verify", start);
+            loadSnapshot(snapshotFile);
+            start = lap("load.snapshot", start);
+        } else {
+            // The three files are chosen as one generation, so registrations never meet students of another
+            choice = SnapshotFiles.choose(SnapshotFiles::verifyCsv, studentFile, eventFile, participationFile);
+            start = lap("load.verify", start);
+            loadStudents(studentFile);
+            start = lap("load.student", start);
+            loadEvents(eventFile);
+            start = lap("load.event", start);
+            loadParticipations(participationFile);
+            start = lap("load.participation", start);
+        }
+
+        journal = new StudentJournal(journalFile, choice.generation);
+        journal.replay(choice.generation, this::applyRecord);
+        generation = Math.max(choice.newest, journal.generation());
+        lap("load.journal", start);
+        // The usedIDs file is appended to without being forced, so it can lag the data after a crash
+        students.keySet().forEach(ids::reserve);
+        events.keySet().forEach(ids::reserve);
+        if (!journal.isEmpty()) {
+            compact();
+        }
     }
 
     public void addStudent(String name, int classYear) throws IOException {
-        if (getIdBasedOnName(name) == -1) {
-            int id = StudentIDGenerator.generateID();
-            students.put(id, new Student(id, name, classYear));
-            saveStudents(STUDENT_FILE);
-        } else {
-            System.out.println("Student name already exists");
+        int id = -1;
+        structureLock.writeLock().lock();
+        try {
+            if (getIdBasedOnName(name) == -1) {
+                id = newId();
+                putStudent(new Student(id, name, classYear));
+                log("addStudent", id, name, classYear);
+            } else {
+                System.out.println("Student name already exists");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
         }
+        if (id != -1) {
+            int added = id;
+            publish(listener -> listener.studentAdded(added));
+        }
+        compactIfNeeded();
     }
 
     public void addEvent(String name, int points, String duration) throws IOException {
-        if (getEventIdBasedOnName(name) == -1) {
-            int id = StudentIDGenerator.generateID();
-            events.put(id, new Events(id, name, points, duration));
-            saveEvents(EVENT_FILE);
-        } else {
-            System.out.println("Event name already exists");
+        int id = -1;
+        structureLock.writeLock().lock();
+        try {
+            if (getEventIdBasedOnName(name) == -1) {
+                id = newId();
+                putEvent(new Events(id, name, points, duration));
+                log("addEvent", id, name, points, duration);
+            } else {
+                System.out.println("Event name already exists");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        if (id != -1) {
+            int added = id;
+            publish(listener -> listener.eventAdded(added));
         }
+        compactIfNeeded();
+    }
+
+    // An id the allocator hands out may still be held by a student or event, if the usedIDs file
+    // was edited or lost; those ids are marked taken and skipped. Callers hold the write lock.
+    private int newId() {
+        int id = ids.generateID();
+        while (students.containsKey(id) || events.containsKey(id)) {
+            System.err.println("ID " + id + " is already in use, skipping it");
+            id = ids.generateID();
+        }
+        return id;
     }
 
     public void removeStudent(int id) throws IOException {
-        if (students.remove(id) != null) {
-            saveStudents(STUDENT_FILE);
-            StudentIDGenerator.usedIDs.remove(id);
-            StudentIDGenerator.saveUsedIDs();
-            registration.remove(id);
-            saveParticipations(PARTICIPATION_FILE);
-        } else {
-            System.out.println("Student does not exist");
+        boolean removed;
+        structureLock.writeLock().lock();
+        try {
+            removed = deleteStudent(id);
+            if (removed) {
+                ids.release(id);
+                log("removeStudent", id);
+            } else {
+                System.out.println("Student does not exist");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
         }
+        if (removed) {
+            publish(listener -> listener.studentRemoved(id));
+        }
+        compactIfNeeded();
     }
 
     public void removeEvent(int id) throws IOException {
-        if (events.remove(id) != null) {
-            saveEvents(EVENT_FILE);
-            StudentIDGenerator.usedIDs.remove(id);
-            StudentIDGenerator.saveUsedIDs();
-            // Remove the event from every student's registration
-            registration.values().forEach(eventList -> eventList.remove((Integer) id));
-            saveParticipations(PARTICIPATION_FILE);
-        } else {
-            System.out.println("Event does not exist");
+        int[] attendees = null;
+        structureLock.writeLock().lock();
+        try {
+            int[] registered = getAttendees(id);
+            if (deleteEvent(id)) {
+                attendees = registered;
+                ids.release(id);
+                log("removeEvent", id);
+            } else {
+                System.out.println("Event does not exist");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        if (attendees != null) {
+            int[] dropped = attendees;
+            publish(listener -> listener.eventRemoved(id, dropped));
         }
+        compactIfNeeded();
     }
 
     public void setStudentName(String name, String newName) throws IOException {
-        int id = getIdBasedOnName(name);
-        if (id != -1) {
-            students.get(id).setName(newName);
-            saveStudents(STUDENT_FILE);
-        } else {
-            System.out.println("Student does not exist");
+        int id;
+        boolean renamed = false;
+        structureLock.writeLock().lock();
+        try {
+            id = getIdBasedOnName(name);
+            int existingId = getIdBasedOnName(newName);
+            if (id != -1 && existingId != -1 && existingId != id) {
+                System.out.println("Student name already exists");
+            } else if (id != -1) {
+                renameStudent(students.get(id), newName);
+                logStudent(id);
+                renamed = !name.equals(newName);
+            } else {
+                System.out.println("Student does not exist");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        if (renamed) {
+            publish(listener -> listener.studentRenamed(id, name, newName));
         }
+        compactIfNeeded();
     }
 
     public void setStudentYear(int id, int year) throws IOException {
-        if (students.containsKey(id)) {
-            students.get(id).setClassYear(year);
-            saveStudents(STUDENT_FILE);
-        } else {
-            System.out.println("Student does not exist");
+        boolean changed = false;
+        structureLock.writeLock().lock();
+        try {
+            if (students.containsKey(id)) {
+                Student student = students.get(id);
+                changed = student.getClassYear() != year;
+                changeClassYear(student, year);
+                logStudent(id);
+            } else {
+                System.out.println("Student does not exist");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        if (changed) {
+            publish(listener -> listener.studentYearChanged(id, year));
         }
+        compactIfNeeded();
     }
 
     public void setEventName(String name, String newName) throws IOException {
-        int id = getEventIdBasedOnName(name);
-        if (id != -1) {
-            events.get(id).setName(newName);
-            saveEvents(EVENT_FILE);
-        } else {
-            System.out.println("Event does not exist");
+        int id;
+        boolean renamed = false;
+        structureLock.writeLock().lock();
+        try {
+            id = getEventIdBasedOnName(name);
+            int existingId = getEventIdBasedOnName(newName);
+            if (id != -1 && existingId != -1 && existingId != id) {
+                System.out.println("Event name already exists");
+            } else if (id != -1) {
+                renameEvent(events.get(id), newName);
+                logEvent(id);
+                renamed = !name.equals(newName);
+            } else {
+                System.out.println("Event does not exist");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
         }
+        if (renamed) {
+            publish(listener -> listener.eventRenamed(id, name, newName));
+        }
+        compactIfNeeded();
     }
 
     public void setEventDuration(int id, String duration) throws IOException {
-        if (events.containsKey(id)) {
-            events.get(id).setDuration(duration);
-            saveEvents(EVENT_FILE);
-        } else {
-            System.out.println("Event does not exist");
+        String oldDuration = null;
+        int[] attendees = null;
+        structureLock.writeLock().lock();
+        try {
+            if (events.containsKey(id)) {
+                Events event = events.get(id);
+                if (event.getQuarter() != Quarters.key(duration)) {
+                    oldDuration = event.getDuration();
+                    attendees = getAttendees(id);
+                }
+                reviseEvent(event, event.getPoints(), duration);
+                logEvent(id);
+            } else {
+                System.out.println("Event does not exist");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        if (oldDuration != null) {
+            String previous = oldDuration;
+            int[] moved = attendees;
+            publish(listener -> listener.eventDurationChanged(id, previous, moved));
         }
+        compactIfNeeded();
     }
 
     public void setEventPoints(int id, int points) throws IOException {
-        if (events.containsKey(id)) {
-            events.get(id).setPoints(points);
-            saveEvents(EVENT_FILE);
-        } else {
-            System.out.println("Event does not exist");
+        int[] attendees = null;
+        structureLock.writeLock().lock();
+        try {
+            if (events.containsKey(id)) {
+                Events event = events.get(id);
+                if (event.getPoints() != points) {
+                    attendees = getAttendees(id);
+                }
+                reviseEvent(event, points, event.getDuration());
+                logEvent(id);
+            } else {
+                System.out.println("Event does not exist");
+            }
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        if (attendees != null) {
+            int[] moved = attendees;
+            publish(listener -> listener.eventPointsChanged(id, moved));
+        }
+        compactIfNeeded();
+    }
+
+    // Changes whenever the data does; equal versions mean nothing changed in between
+    public long version() {
+        return version.get();
+    }
+
+    public void addListener(TrackerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TrackerListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Blocks until every mutation made so far has been written to the journal
+    public void flush() throws IOException {
+        journal.flush();
+    }
+
+    // Called on shutdown. Waits for a running compaction, so a tracker opened on the same files
+    // afterwards cannot race its snapshot writes or its move of the rotated journal.
+    public void close() throws IOException {
+        structureLock.writeLock().lock();
+        try {
+            journal.close();
+            ids.close();
+            compactor.shutdown();
+        } finally {
+            structureLock.writeLock().unlock();
         }
+        awaitCompaction();
     }
 
+    // Journals the registration without waiting for the disk, like the other mutations, so it is
+    // safe to call from the Swing thread. A crash can lose the last few milliseconds of changes.
     public void register(int studentId, int eventId) throws IOException {
-        if (addStudentToParticipation(studentId, eventId)) {
-            saveParticipations(PARTICIPATION_FILE);
+        register(studentId, eventId, false);
+    }
+
+    // Returns once the registration is durable in the journal, for callers that acknowledge it to
+    // someone. The wait happens after the locks are released, so concurrent check-ins share the
+    // journal's group commits.
+    public void registerDurably(int studentId, int eventId) throws IOException {
+        register(studentId, eventId, true);
+    }
+
+    private void register(int studentId, int eventId, boolean durable) throws IOException {
+        long start = System.nanoTime();
+        boolean added;
+        long sequence = 0;
+        structureLock.readLock().lock();
+        Stripe stripe = studentStripe(studentId);
+        long stamp = stripe.lock.writeLock();
+        try {
+            // Logged under the stripe so the journal sees one student's changes in the order applied
+            added = addStudentToParticipation(studentId, eventId);
+            if (added) {
+                sequence = log("register", studentId, eventId);
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+            structureLock.readLock().unlock();
+        }
+        if (added) {
+            if (durable) {
+                journal.awaitDurable(sequence);
+            }
+            publish(listener -> listener.registrationAdded(studentId, eventId));
         }
+        compactIfNeeded();
+        REGISTER_TIME.stop(start);
     }
 
     public int getIdBasedOnName(String name) {
-        for (Student student : students.values()) {
-            if (Objects.equals(student.getName(), name)) {
-                return student.getId();
+        return studentNames.get(name);
+    }
+
+    public int getEventIdBasedOnName(String name) {
+        return eventNames.get(name);
+    }
+
+    public void dropoff(int studentId, int eventId) throws IOException {
+        dropoff(studentId, eventId, false);
+    }
+
+    // Like registerDurably, returns once the dropoff is durable
+    public void dropoffDurably(int studentId, int eventId) throws IOException {
+        dropoff(studentId, eventId, true);
+    }
+
+    private void dropoff(int studentId, int eventId, boolean durable) throws IOException {
+        long start = System.nanoTime();
+        boolean removed;
+        long sequence = 0;
+        structureLock.readLock().lock();
+        Stripe stripe = studentStripe(studentId);
+        long stamp = stripe.lock.writeLock();
+        try {
+            removed = removeStudentFromParticipation(studentId, eventId);
+            if (removed) {
+                sequence = log("dropoff", studentId, eventId);
             }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+            structureLock.readLock().unlock();
         }
-        return -1;
+        if (removed) {
+            if (durable) {
+                journal.awaitDurable(sequence);
+            }
+            publish(listener -> listener.registrationRemoved(studentId, eventId));
+        }
+        compactIfNeeded();
+        DROPOFF_TIME.stop(start);
     }
 
-    public int getEventIdBasedOnName(String name) {
-        for (Events event : events.values()) {
-            if (Objects.equals(event.getName(), name)) {
-                return event.getId();
+    // Registers every (studentId, eventId) pair the iterator yields. Pairs are validated and applied
+    // in batches, each under one hold of the structure lock, and the accepted ones are journaled as
+    // they go. The import returns once they are all on disk, and compacts at most once at the end.
+    public ImportResult importRegistrations(Iterator<int[]> pairs) throws IOException {
+        return importRegistrations(pairs, new int[1]);
+    }
+
+    // Imports a CSV file of studentId,eventId lines, streaming it rather than reading it whole
+    public ImportResult importRegistrations(String fileName) throws IOException {
+        int[] malformed = new int[1];
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            Iterator<int[]> pairs = reader.lines().map(line -> {
+                String[] parts = line.split(",");
+                try {
+                    if (parts.length == 2) {
+                        return new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+                    }
+                } catch (NumberFormatException e) {
+                    // Reported below like a line with the wrong number of fields
+                }
+                System.out.println("Bad participation line: " + line);
+                malformed[0]++;
+                return null;
+            }).filter(Objects::nonNull).iterator();
+            return importRegistrations(pairs, malformed);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // malformed[0] counts the lines the CSV reader dropped, read once the pairs are used up
+    private ImportResult importRegistrations(Iterator<int[]> pairs, int[] malformed) throws IOException {
+        IntList batch = new IntList(2 * IMPORT_BATCH);
+        IntList accepted = new IntList();
+        int total = 0;
+        int duplicates = 0;
+        while (pairs.hasNext()) {
+            int[] pair = pairs.next();
+            batch.add(pair[0]);
+            batch.add(pair[1]);
+            total++;
+            if (batch.size() == 2 * IMPORT_BATCH || !pairs.hasNext()) {
+                duplicates += importBatch(batch, accepted);
+                batch.clear();
             }
         }
-        return -1;
+        journal.flush();
+        int count = accepted.size() / 2;
+        if (count > 0) {
+            int[] studentIds = new int[count];
+            int[] eventIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                studentIds[i] = accepted.get(2 * i);
+                eventIds[i] = accepted.get(2 * i + 1);
+            }
+            publish(listener -> listener.registrationsImported(studentIds, eventIds));
+        }
+        compactIfNeeded();
+        return new ImportResult(count, duplicates, total - count - duplicates + malformed[0]);
     }
 
-    public void dropoff(int studentId, int eventId) throws IOException {
-        List<Integer> eventList = registration.get(studentId);
-        if (eventList != null && eventList.remove((Integer) eventId)) {
-            if (eventList.isEmpty()) {
-                registration.remove(studentId);
+    // Applies one batch of pairs, adding the accepted ones to accepted; returns the duplicates
+    private int importBatch(IntList batch, IntList accepted) throws IOException {
+        int duplicates = 0;
+        structureLock.writeLock().lock();
+        try {
+            for (int i = 0; i < batch.size(); i += 2) {
+                int studentId = batch.get(i);
+                int eventId = batch.get(i + 1);
+                if (!students.containsKey(studentId) || !events.containsKey(eventId)) {
+                    continue;
+                }
+                Stripe stripe = studentStripe(studentId);
+                long stamp = stripe.lock.writeLock();
+                try {
+                    if (addStudentToParticipation(studentId, eventId)) {
+                        log("register", studentId, eventId);
+                        accepted.add(studentId);
+                        accepted.add(eventId);
+                    } else {
+                        duplicates++;
+                    }
+                } finally {
+                    stripe.lock.unlockWrite(stamp);
+                }
             }
-            saveParticipations(PARTICIPATION_FILE);
+        } finally {
+            structureLock.writeLock().unlock();
         }
+        return duplicates;
+    }
+
+    // Event ids the student is registered for, in no particular order
+    public int[] getRegisteredEvents(int studentId) {
+        Stripe stripe = studentStripe(studentId);
+        return stripe.read(() -> {
+            IntSet eventSet = stripe.sets.get(studentId);
+            return eventSet != null ? eventSet.toArray() : new int[0];
+        });
+    }
+
+    // Student ids registered for the event, in no particular order
+    public int[] getAttendees(int eventId) {
+        Stripe stripe = eventStripe(eventId);
+        return stripe.read(() -> {
+            IntSet studentSet = stripe.sets.get(eventId);
+            return studentSet != null ? studentSet.toArray() : new int[0];
+        });
+    }
+
+    public int getAttendeeCount(int eventId) {
+        Stripe stripe = eventStripe(eventId);
+        return stripe.readInt(() -> {
+            IntSet studentSet = stripe.sets.get(eventId);
+            return studentSet != null ? studentSet.size() : 0;
+        });
+    }
+
+    public boolean isRegistered(int studentId, int eventId) {
+        Stripe stripe = studentStripe(studentId);
+        return stripe.read(() -> {
+            IntSet eventSet = stripe.sets.get(studentId);
+            return eventSet != null && eventSet.contains(eventId);
+        });
     }
 
     public int totalPoints(int studentId) {
-        List<Integer> eventList = registration.get(studentId);
-        if (eventList != null) {
-            return eventList.stream()
-                    .mapToInt(eventId -> events.get(eventId).getPoints())
-                    .sum();
+        Stripe stripe = studentStripe(studentId);
+        return stripe.readInt(() -> stripe.totals.get(studentId));
+    }
+
+    // Copy of the whole tracker that reports can iterate while other threads keep mutating it.
+    // Taken under the write lock, so it is one consistent state.
+    public Snapshot snapshot() {
+        structureLock.writeLock().lock();
+        try {
+            return copyState();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // Like snapshot(), but copies a few int arrays instead of every registration; null when the
+    // columnar store is not enabled
+    public ColumnSnapshot columnSnapshot() {
+        if (columns == null) {
+            return null;
+        }
+        structureLock.writeLock().lock();
+        try {
+            ColumnStore copy = columns.copy();
+            List<Events> eventCopy = new ArrayList<>(copy.eventCount());
+            int[] attendees = new int[copy.eventCount()];
+            for (int row = 0; row < copy.eventCount(); row++) {
+                Events event = events.get(copy.eventId(row));
+                eventCopy.add(new Events(event.getId(), event.getName(), event.getPoints(), event.getDuration()));
+                attendees[row] = getAttendeeCount(event.getId());
+            }
+            return new ColumnSnapshot(copy, eventCopy, attendees);
+        } finally {
+            structureLock.writeLock().unlock();
         }
-        return 0;
     }
 
     public Student getTopStudentOfQuarter(String target) {
-        return students.values().stream()
-                .max(Comparator.comparingInt(student -> getQuarterlyPersonReport(target, student.getId())))
-                .orElse(null);
+        long start = System.nanoTime();
+        Student top = findTopStudentOfQuarter(target);
+        TOP_STUDENT_TIME.stop(start);
+        return top;
+    }
+
+    private Student findTopStudentOfQuarter(String target) {
+        Leaderboard board = findLeaderboard(target);
+        if (board != null && board.topPoints() > 0) {
+            return students.get(board.top());
+        }
+        // Nobody earned points that quarter; any student without points ties for first
+        for (Student student : students.values()) {
+            if (board == null || board.points(student.getId()) == 0) {
+                return student;
+            }
+        }
+        return board != null ? students.get(board.top()) : null;
+    }
+
+    // Page of the quarter's ranking, best first, starting at the 0-based position from
+    public List<Student> getTopStudentsOfQuarter(String target, int from, int count) {
+        Leaderboard board = findLeaderboard(target);
+        List<Student> page = new ArrayList<>();
+        if (board != null) {
+            for (int studentId : board.page(from, count)) {
+                page.add(students.get(studentId));
+            }
+        }
+        return page;
+    }
+
+    // 1-based position of the student in the quarter's ranking, or -1 without points that quarter
+    public int getRankOfQuarter(String target, int studentId) {
+        Leaderboard board = findLeaderboard(target);
+        return board != null ? board.rank(studentId) : -1;
+    }
+
+    public int getRankedCountOfQuarter(String target) {
+        Leaderboard board = findLeaderboard(target);
+        return board != null ? board.size() : 0;
+    }
+
+    // Quarters that at least one event takes place in, in chronological order
+    public List<String> getQuarters() {
+        BitSet used = new BitSet();
+        for (Events event : events.values()) {
+            used.set(event.getQuarter());
+        }
+        List<String> quarters = new ArrayList<>();
+        used.stream().forEach(key -> quarters.add(Quarters.name(key)));
+        quarters.sort(Quarters.CHRONOLOGICAL);
+        return quarters;
     }
 
     public Student getRandomWinner() {
@@ -171,37 +790,390 @@ public class StudentTracker {
     }
 
     public int getQuarterlyPersonReport(String target, int studentId) {
-        int sum = 0;
-        List<Integer> eventList = registration.get(studentId);
-        if (eventList != null) {
-            for (Integer eventId : eventList) {
-                Events event = events.get(eventId);
-                if (Objects.equals(target, event.getDuration())) {
-                    sum += event.getPoints();
-                }
-            }
+        Leaderboard board = findLeaderboard(target);
+        return board != null ? board.points(studentId) : 0;
+    }
+
+    private static Stripe[] newStripes() {
+        Stripe[] stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
         }
-        return sum;
+        return stripes;
+    }
+
+    private Stripe studentStripe(int studentId) {
+        return studentStripes[stripeIndex(studentId)];
+    }
+
+    private Stripe eventStripe(int eventId) {
+        return eventStripes[stripeIndex(eventId)];
+    }
+
+    private static int stripeIndex(int id) {
+        return IntSet.hash(id) & (STRIPES - 1);
     }
 
+    // The caller holds the student's stripe, or has the tracker to itself while loading
     private boolean addStudentToParticipation(int studentId, int eventId) {
-        if (!students.containsKey(studentId) || !events.containsKey(eventId)) {
+        Events event = events.get(eventId);
+        if (!students.containsKey(studentId) || event == null) {
             return false;
         }
-        registration.computeIfAbsent(studentId, k -> new ArrayList<>());
-        if (!registration.get(studentId).contains(eventId)) {
-            registration.get(studentId).add(eventId);
+        if (studentStripe(studentId).sets.computeIfAbsent(studentId, k -> new IntSet()).add(eventId)) {
+            Stripe stripe = eventStripe(eventId);
+            stripe.write(() -> stripe.sets.computeIfAbsent(eventId, k -> new IntSet()).add(studentId));
+            credit(studentId, event, 1);
+            return true;
+        }
+        return false;
+    }
+
+    // The caller holds the student's stripe, or has the tracker to itself while loading
+    private boolean removeStudentFromParticipation(int studentId, int eventId) {
+        if (unlink(studentStripe(studentId).sets, studentId, eventId)) {
+            Stripe stripe = eventStripe(eventId);
+            stripe.write(() -> unlink(stripe.sets, eventId, studentId));
+            credit(studentId, events.get(eventId), -1);
             return true;
         }
         return false;
     }
 
+    // Removes value from the set stored under key, dropping the set once it is empty
+    private static boolean unlink(IntObjectMap<IntSet> index, int key, int value) {
+        IntSet set = index.get(key);
+        if (set == null || !set.remove(value)) {
+            return false;
+        }
+        if (set.isEmpty()) {
+            index.remove(key);
+        }
+        return true;
+    }
+
+    // Adds (sign 1) or withdraws (sign -1) the event's points from the student's running totals.
+    // The caller holds the student's stripe.
+    private void credit(int studentId, Events event, int sign) {
+        int points = sign * event.getPoints();
+        studentStripe(studentId).totals.add(studentId, points);
+        leaderboard(event.getQuarter()).add(studentId, points);
+        if (columns != null) {
+            columns.credit(studentId, event.getQuarter(), points, sign);
+        }
+    }
+
+    private Leaderboard findLeaderboard(String quarter) {
+        int key = Quarters.find(quarter);
+        Leaderboard[] boards = leaderboards;
+        return key >= 0 && key < boards.length ? boards[key] : null;
+    }
+
+    private Leaderboard leaderboard(int quarter) {
+        Leaderboard[] boards = leaderboards;
+        if (quarter < boards.length && boards[quarter] != null) {
+            return boards[quarter];
+        }
+        synchronized (leaderboardLock) {
+            boards = leaderboards;
+            if (quarter >= boards.length) {
+                boards = Arrays.copyOf(boards, Quarters.count());
+            } else if (boards[quarter] == null) {
+                boards = boards.clone();
+            } else {
+                return boards[quarter];
+            }
+            boards[quarter] = new Leaderboard();
+            leaderboards = boards;
+            return boards[quarter];
+        }
+    }
+
+    // Changes points and quarter of an event, moving its attendees' totals along with it.
+    // Runs under the structure write lock, so the attendee set cannot change meanwhile.
+    private void reviseEvent(Events event, int points, String duration) {
+        IntSet studentSet = eventStripe(event.getId()).sets.get(event.getId());
+        if (studentSet != null) {
+            studentSet.forEach(studentId -> studentStripe(studentId).write(() -> credit(studentId, event, -1)));
+        }
+        event.setPoints(points);
+        event.setDuration(duration);
+        if (columns != null) {
+            columns.addEvent(event.getId(), points, event.getQuarter());
+        }
+        if (studentSet != null) {
+            studentSet.forEach(studentId -> studentStripe(studentId).write(() -> credit(studentId, event, 1)));
+        }
+    }
+
+    private void putStudent(Student student) {
+        students.put(student.getId(), student);
+        studentNames.put(student.getName(), student.getId());
+        if (columns != null) {
+            columns.addStudent(student.getId(), student.getClassYear());
+        }
+    }
+
+    private void putEvent(Events event) {
+        events.put(event.getId(), event);
+        eventNames.put(event.getName(), event.getId());
+        if (columns != null) {
+            columns.addEvent(event.getId(), event.getPoints(), event.getQuarter());
+        }
+    }
+
+    private void changeClassYear(Student student, int classYear) {
+        student.setClassYear(classYear);
+        if (columns != null) {
+            columns.setClassYear(student.getId(), classYear);
+        }
+    }
+
+    private void renameStudent(Student student, String newName) {
+        studentNames.remove(student.getName(), student.getId());
+        student.setName(newName);
+        studentNames.put(newName, student.getId());
+    }
+
+    private void renameEvent(Events event, String newName) {
+        eventNames.remove(event.getName(), event.getId());
+        event.setName(newName);
+        eventNames.put(newName, event.getId());
+    }
+
+    private boolean deleteStudent(int id) {
+        Student student = students.remove(id);
+        if (student == null) {
+            return false;
+        }
+        studentNames.remove(student.getName(), id);
+        studentStripe(id).write(() -> {
+            IntSet eventSet = studentStripe(id).sets.remove(id);
+            if (eventSet != null) {
+                eventSet.forEach(eventId -> {
+                    Stripe stripe = eventStripe(eventId);
+                    stripe.write(() -> unlink(stripe.sets, eventId, id));
+                    credit(id, events.get(eventId), -1);
+                });
+            }
+        });
+        if (columns != null) {
+            columns.removeStudent(id);
+        }
+        return true;
+    }
+
+    private boolean deleteEvent(int id) {
+        Events event = events.remove(id);
+        if (event == null) {
+            return false;
+        }
+        eventNames.remove(event.getName(), id);
+        // Only the students registered for the event need their registration touched
+        Stripe eventStripe = eventStripe(id);
+        IntSet studentSet = eventStripe.read(() -> eventStripe.sets.get(id));
+        if (studentSet != null) {
+            studentSet.forEach(studentId -> {
+                Stripe stripe = studentStripe(studentId);
+                stripe.write(() -> {
+                    unlink(stripe.sets, studentId, id);
+                    credit(studentId, event, -1);
+                });
+            });
+            eventStripe.write(() -> eventStripe.sets.remove(id));
+        }
+        if (columns != null) {
+            columns.removeEvent(id);
+        }
+        return true;
+    }
+
+    // ------------------ Journal Operations ------------------
+
+    // Returns the record's journal sequence number, for awaitDurable
+    private long log(Object... fields) throws IOException {
+        StringJoiner record = new StringJoiner(",");
+        for (Object field : fields) {
+            record.add(String.valueOf(field));
+        }
+        return journal.append(record.toString());
+    }
+
+    // Called once the caller has released its locks, since compaction needs the write lock
+    private void compactIfNeeded() throws IOException {
+        if (journal.size() >= COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+
+    // A failing listener is reported and skipped so the others still hear about the change
+    private void publish(Consumer<TrackerListener> change) {
+        version.incrementAndGet();
+        for (TrackerListener listener : listeners) {
+            try {
+                change.accept(listener);
+            } catch (RuntimeException e) {
+                System.err.println("Error in tracker listener: " + e);
+            }
+        }
+    }
+
+    private void logStudent(int id) throws IOException {
+        Student student = students.get(id);
+        log("updateStudent", id, student.getName(), student.getClassYear());
+    }
+
+    private void logEvent(int id) throws IOException {
+        Events event = events.get(id);
+        log("updateEvent", id, event.getName(), event.getPoints(), event.getDuration());
+    }
+
+    // Re-applies one journal record on top of the loaded snapshot
+    private void applyRecord(String[] parts) {
+        switch (parts[0]) {
+            case "addStudent", "updateStudent" -> {
+                int id = Integer.parseInt(parts[1]);
+                int classYear = Integer.parseInt(parts[3]);
+                Student student = students.get(id);
+                if (student == null) {
+                    putStudent(new Student(id, parts[2], classYear));
+                } else {
+                    renameStudent(student, parts[2]);
+                    changeClassYear(student, classYear);
+                }
+            }
+            case "addEvent", "updateEvent" -> {
+                int id = Integer.parseInt(parts[1]);
+                int points = Integer.parseInt(parts[3]);
+                Events event = events.get(id);
+                if (event == null) {
+                    putEvent(new Events(id, parts[2], points, parts[4]));
+                } else {
+                    renameEvent(event, parts[2]);
+                    reviseEvent(event, points, parts[4]);
+                }
+            }
+            case "removeStudent" -> deleteStudent(Integer.parseInt(parts[1]));
+            case "removeEvent" -> deleteEvent(Integer.parseInt(parts[1]));
+            case "register" -> addStudentToParticipation(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            case "dropoff" -> removeStudentFromParticipation(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            default -> throw new IllegalArgumentException("Unknown journal record: " + parts[0]);
+        }
+    }
+
+    // Folds the journal into fresh snapshot files. The current state is copied here so the
+    // background writer never sees later mutations; those go to the new journal segment.
+    private void compact() throws IOException {
+        structureLock.writeLock().lock();
+        try {
+            if (compaction != null && !compaction.isDone()) {
+                return;
+            }
+            long next = ++generation;
+            journal.rotate(next);
+            Snapshot snapshot = copyState();
+            boolean binary = binarySnapshot;
+            compaction = compactor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    if (binary) {
+                        BinarySnapshot.write(snapshotFile, next, snapshot.students, snapshot.events, snapshot.registration);
+                        Metrics.timer("save.snapshot").stop(start);
+                        Metrics.counter("save.snapshot.bytes").add(Files.size(Paths.get(snapshotFile)));
+                    } else {
+                        saveStudents(studentFile, next, snapshot.students);
+                        saveEvents(eventFile, next, snapshot.events);
+                        saveParticipations(participationFile, next, snapshot.registration);
+                    }
+                    journal.keepRotated();
+                    COMPACTION_TIME.stop(start);
+                } catch (IOException e) {
+                    System.err.println("Error compacting journal: " + e.getMessage());
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // The caller holds the structure write lock, so no stripe is being written
+    private Snapshot copyState() {
+        List<Student> studentCopy = new ArrayList<>(students.size());
+        for (Student student : students.values()) {
+            studentCopy.add(new Student(student.getId(), student.getName(), student.getClassYear()));
+        }
+        List<Events> eventCopy = new ArrayList<>(events.size());
+        for (Events event : events.values()) {
+            eventCopy.add(new Events(event.getId(), event.getName(), event.getPoints(), event.getDuration()));
+        }
+        IntObjectMap<IntSet> registrationCopy = new IntObjectMap<>(students.size());
+        for (Stripe stripe : studentStripes) {
+            stripe.sets.forEach((studentId, eventSet) -> registrationCopy.put(studentId, eventSet.copy()));
+        }
+        return new Snapshot(studentCopy, eventCopy, registrationCopy);
+    }
+
+    private void awaitCompaction() throws IOException {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compaction");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    // Writes the current state as a binary snapshot or as the CSV files and keeps using that format
+    public void convertSnapshot(boolean binary) throws IOException {
+        awaitCompaction();
+        binarySnapshot = binary;
+        compact();
+        awaitCompaction();
+        if (!binary) {
+            Files.deleteIfExists(Paths.get(snapshotFile));
+            Files.deleteIfExists(SnapshotFiles.previous(snapshotFile));
+        }
+    }
+
     // ------------------ File I/O Operations ------------------
 
+    private void loadSnapshot(String fileName) throws IOException {
+        LongAdder orphans = new LongAdder();
+        BinarySnapshot.read(fileName, new BinarySnapshot.Sink() {
+            @Override
+            public void student(int id, String name, int classYear) {
+                putStudent(new Student(id, name, classYear));
+            }
+
+            @Override
+            public void event(int id, String name, int points, String duration) {
+                putEvent(new Events(id, name, points, duration));
+            }
+
+            @Override
+            public void registration(int studentId, int eventId) {
+                loadRegistration(studentId, eventId, orphans);
+            }
+        });
+        reportOrphans(fileName, orphans);
+    }
+
     private void loadStudents(String fileName) throws IOException {
+        if (loadInParallel(fileName)) {
+            loadStudentsInParallel(fileName);
+            return;
+        }
         try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
             String line;
             while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
                 String[] parts = line.split(",");
                 if (parts.length != 3) {
                     System.out.println("Bad student line: " + line);
@@ -210,15 +1182,22 @@ public class StudentTracker {
                 int id = Integer.parseInt(parts[0].trim());
                 String name = parts[1].trim();
                 int classYear = Integer.parseInt(parts[2].trim());
-                students.put(id, new Student(id, name, classYear));
+                putStudent(new Student(id, name, classYear));
             }
         }
     }
 
     private void loadEvents(String fileName) throws IOException {
+        if (loadInParallel(fileName)) {
+            loadEventsInParallel(fileName);
+            return;
+        }
         try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
             String line;
             while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
                 String[] parts = line.split(",");
                 if (parts.length != 4) {
                     System.out.println("Bad event line: " + line);
@@ -228,15 +1207,23 @@ public class StudentTracker {
                 String name = parts[1].trim();
                 int points = Integer.parseInt(parts[2].trim());
                 String duration = parts[3].trim();
-                events.put(id, new Events(id, name, points, duration));
+                putEvent(new Events(id, name, points, duration));
             }
         }
     }
 
     private void loadParticipations(String fileName) throws IOException {
+        if (loadInParallel(fileName)) {
+            loadParticipationsInParallel(fileName);
+            return;
+        }
+        LongAdder orphans = new LongAdder();
         try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
             String line;
             while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
                 String[] parts = line.split(",");
                 if (parts.length != 2) {
                     System.out.println("Bad participation line: " + line);
@@ -244,38 +1231,173 @@ public class StudentTracker {
                 }
                 int studentId = Integer.parseInt(parts[0].trim());
                 int eventId = Integer.parseInt(parts[1].trim());
-                addStudentToParticipation(studentId, eventId);
+                loadRegistration(studentId, eventId, orphans);
+            }
+        }
+        reportOrphans(fileName, orphans);
+    }
+
+    // Loads a stored registration, counting the ones whose student or event does not exist
+    private void loadRegistration(int studentId, int eventId, LongAdder orphans) {
+        if (students.containsKey(studentId) && events.containsKey(eventId)) {
+            addStudentToParticipation(studentId, eventId);
+        } else {
+            orphans.increment();
+        }
+    }
+
+    private static void reportOrphans(String fileName, LongAdder orphans) {
+        if (orphans.sum() > 0) {
+            System.err.println("Skipped " + orphans.sum() + " registrations in " + fileName
+                    + " whose student or event does not exist");
+        }
+    }
+
+    private static boolean loadInParallel(String fileName) {
+        return PARALLEL_LOAD && new File(fileName).length() >= PARALLEL_LOAD_BYTES;
+    }
+
+    // Lines are parsed in parallel; the students are added in file order, so a repeated id or
+    // name resolves the same way as in the sequential loader
+    private void loadStudentsInParallel(String fileName) throws IOException {
+        List<List<Student>> ranges = CsvLoader.read(fileName, "student", 3, ArrayList::new,
+                (line, result) -> result.add(new Student(line.intField(0), line.stringField(1), line.intField(2))));
+        for (List<Student> range : ranges) {
+            range.forEach(this::putStudent);
+        }
+    }
+
+    private void loadEventsInParallel(String fileName) throws IOException {
+        List<List<Events>> ranges = CsvLoader.read(fileName, "event", 4, ArrayList::new,
+                (line, result) -> result.add(new Events(line.intField(0), line.stringField(1), line.intField(2), line.stringField(3))));
+        for (List<Events> range : ranges) {
+            range.forEach(this::putEvent);
+        }
+    }
+
+    // Each parsed range sorts its (student, event) pairs into one bucket per student stripe and
+    // one per event stripe. Every stripe is then filled by a single task, so no task waits on
+    // another, and the quarterly points are summed per student and handed to each leaderboard
+    // once, instead of re-ranking the student after every registration.
+    private void loadParticipationsInParallel(String fileName) throws IOException {
+        List<IntList[]> ranges = CsvLoader.read(fileName, "participation", 2, () -> {
+            IntList[] buckets = new IntList[2 * STRIPES];
+            Arrays.setAll(buckets, i -> new IntList());
+            return buckets;
+        }, (line, buckets) -> {
+            int studentId = line.intField(0);
+            int eventId = line.intField(1);
+            IntList byStudent = buckets[stripeIndex(studentId)];
+            byStudent.add(studentId);
+            byStudent.add(eventId);
+            IntList byEvent = buckets[STRIPES + stripeIndex(eventId)];
+            byEvent.add(studentId);
+            byEvent.add(eventId);
+        });
+        // Every event is loaded, so no quarter key beyond this one can turn up
+        int quarters = Quarters.count();
+        LongAdder orphans = new LongAdder();
+        List<IntIntMap[]> quarterPoints = IntStream.range(0, STRIPES).parallel()
+                .mapToObj(stripe -> linkStudentStripe(stripe, ranges, quarters, orphans))
+                .toList();
+        reportOrphans(fileName, orphans);
+        IntStream.range(0, STRIPES).parallel().forEach(stripe -> linkEventStripe(stripe, ranges));
+        IntStream.range(0, quarters).parallel().forEach(quarter -> {
+            for (IntIntMap[] points : quarterPoints) {
+                if (points[quarter] != null) {
+                    Leaderboard board = leaderboard(quarter);
+                    points[quarter].forEach(board::add);
+                }
+            }
+        });
+    }
+
+    // Registers the pairs bucketed under one student stripe and returns student -> points per quarter key
+    private IntIntMap[] linkStudentStripe(int index, List<IntList[]> ranges, int quarters, LongAdder orphans) {
+        Stripe stripe = studentStripes[index];
+        IntIntMap[] quarterPoints = new IntIntMap[quarters];
+        for (IntList[] buckets : ranges) {
+            IntList pairs = buckets[index];
+            for (int i = 0; i < pairs.size(); i += 2) {
+                int studentId = pairs.get(i);
+                int eventId = pairs.get(i + 1);
+                Events event = events.get(eventId);
+                if (event == null || !students.containsKey(studentId)) {
+                    orphans.increment();
+                } else if (stripe.sets.computeIfAbsent(studentId, k -> new IntSet()).add(eventId)) {
+                    stripe.totals.add(studentId, event.getPoints());
+                    int quarter = event.getQuarter();
+                    if (columns != null) {
+                        columns.credit(studentId, quarter, event.getPoints(), 1);
+                    }
+                    if (quarterPoints[quarter] == null) {
+                        quarterPoints[quarter] = new IntIntMap();
+                    }
+                    quarterPoints[quarter].add(studentId, event.getPoints());
+                }
             }
         }
+        return quarterPoints;
     }
 
-    private void saveStudents(String fileName) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            for (Student student : students.values()) {
-                writer.write(String.format("%d,%s,%d", student.getId(), student.getName(), student.getClassYear()));
-                writer.newLine();
+    private void linkEventStripe(int index, List<IntList[]> ranges) {
+        Stripe stripe = eventStripes[index];
+        for (IntList[] buckets : ranges) {
+            IntList pairs = buckets[STRIPES + index];
+            for (int i = 0; i < pairs.size(); i += 2) {
+                int studentId = pairs.get(i);
+                int eventId = pairs.get(i + 1);
+                if (events.containsKey(eventId) && students.containsKey(studentId)) {
+                    stripe.sets.computeIfAbsent(eventId, k -> new IntSet()).add(studentId);
+                }
+            }
+        }
+    }
+
+    private void saveStudents(String fileName, long generation, Collection<Student> students) throws IOException {
+        long start = System.nanoTime();
+        try (SnapshotFiles.Writer writer = SnapshotFiles.create(fileName, generation)) {
+            for (Student student : students) {
+                writer.line(String.format("%d,%s,%d", student.getId(), student.getName(), student.getClassYear()));
             }
+            writer.commit();
+            saved("student", start, writer);
         }
     }
 
-    private void saveEvents(String fileName) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            for (Events event : events.values()) {
-                writer.write(String.format("%d,%s,%d,%s", event.getId(), event.getName(), event.getPoints(), event.getDuration()));
-                writer.newLine();
+    private void saveEvents(String fileName, long generation, Collection<Events> events) throws IOException {
+        long start = System.nanoTime();
+        try (SnapshotFiles.Writer writer = SnapshotFiles.create(fileName, generation)) {
+            for (Events event : events) {
+                writer.line(String.format("%d,%s,%d,%s", event.getId(), event.getName(), event.getPoints(), event.getDuration()));
             }
+            writer.commit();
+            saved("event", start, writer);
         }
     }
 
-    private void saveParticipations(String fileName) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            for (Map.Entry<Integer, List<Integer>> entry : registration.entrySet()) {
-                int studentId = entry.getKey();
-                for (Integer eventId : entry.getValue()) {
-                    writer.write(String.format("%d,%d", studentId, eventId));
-                    writer.newLine();
+    private void saveParticipations(String fileName, long generation, IntObjectMap<IntSet> registration) throws IOException {
+        long start = System.nanoTime();
+        try (SnapshotFiles.Writer writer = SnapshotFiles.create(fileName, generation)) {
+            for (int studentId : registration.keys()) {
+                for (int eventId : registration.get(studentId).toArray()) {
+                    writer.line(String.format("%d,%d", studentId, eventId));
                 }
             }
+            writer.commit();
+            saved("participation", start, writer);
         }
     }
+
+    private static void saved(String file, long start, SnapshotFiles.Writer writer) {
+        Metrics.timer("save." + file).stop(start);
+        Metrics.counter("save." + file + ".bytes").add(writer.bytes());
+    }
+
+    // Records the time since start under the given timer and returns the current time
+    private static long lap(String timer, long start) {
+        long now = System.nanoTime();
+        Metrics.timer(timer).record(now - start);
+        return now;
+    }
 }
@@ -0,0 +1,44 @@
+// Receives the changes made through StudentTracker's public methods, one call per change and only
+// when something actually changed. Calls arrive on the thread that made the change, after the
+// tracker has released its locks, so a listener may query the tracker but should return quickly.
+// Every method has an empty default, so listeners override just the changes they care about.
+public interface TrackerListener {
+    default void studentAdded(int studentId) {
+    }
+
+    default void studentRemoved(int studentId) {
+    }
+
+    default void studentRenamed(int studentId, String oldName, String newName) {
+    }
+
+    default void studentYearChanged(int studentId, int classYear) {
+    }
+
+    default void eventAdded(int eventId) {
+    }
+
+    // attendees were registered for the event when it was removed and have lost its points
+    default void eventRemoved(int eventId, int[] attendees) {
+    }
+
+    default void eventRenamed(int eventId, String oldName, String newName) {
+    }
+
+    // attendees' totals and quarterly points moved along with the event
+    default void eventPointsChanged(int eventId, int[] attendees) {
+    }
+
+    default void eventDurationChanged(int eventId, String oldDuration, int[] attendees) {
+    }
+
+    default void registrationAdded(int studentId, int eventId) {
+    }
+
+    default void registrationRemoved(int studentId, int eventId) {
+    }
+
+    // One call per bulk import instead of one per registration; pair i is (studentIds[i], eventIds[i])
+    default void registrationsImported(int[] studentIds, int[] eventIds) {
+    }
+}
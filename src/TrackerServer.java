@@ -0,0 +1,316 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Serves one shared tracker over HTTP, so check-in stations can work against a single instance
+// instead of each opening the data files in its own desktop session. Every request runs on its
+// own virtual thread; the tracker's striped locks let registrations for different students
+// proceed in parallel. Responses are JSON.
+//
+//   POST /register?student=<id>&event=<id>   register, or a no-op if already registered
+//   POST /dropoff?student=<id>&event=<id>    drop a registration, or a no-op if there is none
+//   GET  /student?id=<id> | ?name=<name>     student with total points and registered events
+//   GET  /event?id=<id> | ?name=<name>       event with its attendee count
+//   GET  /report?quarter=<q>[&from=0&count=10]  the quarter's ranking, best first
+//   GET  /rollups                            class year rollups from ReportEngine
+//   GET  /stats                              registration backlog and latency
+//
+// Registrations and dropoffs go through a RegistrationExecutor, so those of one student apply in
+// the order they arrived and each is answered once it is on disk; when the backlog stays full the
+// request is answered with 503.
+public class TrackerServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_PAGE = 1000;
+    private static final int BACKLOG = Integer.getInteger("registrationBacklog", 10_000);
+    private static final long BACKLOG_WAIT_MILLIS = Long.getLong("registrationBacklogWaitMillis", 1000);
+
+    private final StudentTracker tracker;
+    private final ReportEngine reportEngine;
+    private final RegistrationExecutor registrations;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // A request that cannot be served; becomes an error response with the given status
+    private static final class RequestException extends Exception {
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Handler {
+        String handle(Map<String, String> params) throws IOException, RequestException;
+    }
+
+    public TrackerServer(StudentTracker tracker, InetSocketAddress address) throws IOException {
+        this.tracker = tracker;
+        this.reportEngine = new ReportEngine(tracker, true);
+        this.registrations = new RegistrationExecutor(tracker, BACKLOG, BACKLOG_WAIT_MILLIS);
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        route("/register", "POST", this::register);
+        route("/dropoff", "POST", this::dropoff);
+        route("/student", "GET", this::student);
+        route("/event", "GET", this::event);
+        route("/report", "GET", this::report);
+        route("/rollups", "GET", params -> rollups());
+        route("/stats", "GET", params -> stats());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting requests, gives running ones a second to finish, waits for queued
+    // registrations and closes the tracker
+    public void stop() throws IOException {
+        server.stop(1);
+        executor.shutdown();
+        registrations.close();
+        tracker.close();
+    }
+
+    private String register(Map<String, String> params) throws IOException, RequestException {
+        int studentId = studentId(params);
+        int eventId = eventId(params);
+        await(registrations.register(studentId, eventId));
+        return registration(studentId, eventId);
+    }
+
+    private String dropoff(Map<String, String> params) throws IOException, RequestException {
+        int studentId = studentId(params);
+        int eventId = eventId(params);
+        await(registrations.dropoff(studentId, eventId));
+        return registration(studentId, eventId);
+    }
+
+    private static void await(CompletableFuture<Void> operation) throws IOException {
+        try {
+            operation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private String registration(int studentId, int eventId) {
+        return "{\"student\":" + studentId + ",\"event\":" + eventId
+                + ",\"registered\":" + tracker.isRegistered(studentId, eventId)
+                + ",\"totalPoints\":" + tracker.totalPoints(studentId) + "}";
+    }
+
+    private String student(Map<String, String> params) throws RequestException {
+        int id = params.containsKey("name") ? tracker.getIdBasedOnName(params.get("name")) : intParam(params, "id");
+        Student student = tracker.students.get(id);
+        if (student == null) {
+            throw new RequestException(404, "Student does not exist");
+        }
+        int[] registered = tracker.getRegisteredEvents(id);
+        Arrays.sort(registered);
+        return "{\"id\":" + id + ",\"name\":" + quote(student.getName()) + ",\"classYear\":" + student.getClassYear()
+                + ",\"totalPoints\":" + tracker.totalPoints(id) + ",\"events\":" + Arrays.toString(registered).replace(" ", "") + "}";
+    }
+
+    private String event(Map<String, String> params) throws RequestException {
+        int id = params.containsKey("name") ? tracker.getEventIdBasedOnName(params.get("name")) : intParam(params, "id");
+        Events event = tracker.events.get(id);
+        if (event == null) {
+            throw new RequestException(404, "Event does not exist");
+        }
+        return "{\"id\":" + id + ",\"name\":" + quote(event.getName()) + ",\"points\":" + event.getPoints()
+                + ",\"quarter\":" + quote(event.getDuration()) + ",\"attendees\":" + tracker.getAttendeeCount(id) + "}";
+    }
+
+    private String report(Map<String, String> params) throws RequestException {
+        String quarter = params.get("quarter");
+        if (quarter == null) {
+            throw new RequestException(400, "Missing parameter: quarter");
+        }
+        int from = params.containsKey("from") ? intParam(params, "from") : 0;
+        int count = params.containsKey("count") ? intParam(params, "count") : 10;
+        if (from < 0 || count < 0 || count > MAX_PAGE) {
+            throw new RequestException(400, "Page out of range");
+        }
+        StringJoiner ranking = new StringJoiner(",", "[", "]");
+        for (Student student : tracker.getTopStudentsOfQuarter(quarter, from, count)) {
+            if (student != null) {
+                ranking.add("{\"id\":" + student.getId() + ",\"name\":" + quote(student.getName())
+                        + ",\"points\":" + tracker.getQuarterlyPersonReport(quarter, student.getId()) + "}");
+            }
+        }
+        return "{\"quarter\":" + quote(quarter) + ",\"ranked\":" + tracker.getRankedCountOfQuarter(quarter)
+                + ",\"from\":" + from + ",\"students\":" + ranking + "}";
+    }
+
+    private String rollups() {
+        ReportEngine.Report report = reportEngine.report();
+        StringJoiner quarters = new StringJoiner(",", "[", "]");
+        report.quarters.forEach(quarter -> quarters.add(quote(quarter)));
+        StringJoiner classYears = new StringJoiner(",", "[", "]");
+        for (ReportEngine.ClassYearRollup row : report.classYears) {
+            classYears.add("{\"classYear\":" + row.classYear + ",\"students\":" + row.students
+                    + ",\"totalPoints\":" + Arrays.toString(row.totalPoints).replace(" ", "")
+                    + ",\"participants\":" + Arrays.toString(row.participants).replace(" ", "") + "}");
+        }
+        return "{\"version\":" + report.version + ",\"students\":" + report.students
+                + ",\"quarters\":" + quarters + ",\"classYears\":" + classYears + "}";
+    }
+
+    private String stats() {
+        RegistrationExecutor.Stats stats = registrations.stats();
+        return "{\"depth\":" + stats.depth + ",\"maxDepth\":" + stats.maxDepth + ",\"capacity\":" + stats.capacity
+                + ",\"activeStudents\":" + stats.activeStudents + ",\"rejected\":" + stats.rejected
+                + ",\"register\":" + operationStats(stats.register) + ",\"dropoff\":" + operationStats(stats.dropoff) + "}";
+    }
+
+    private static String operationStats(RegistrationExecutor.OperationStats stats) {
+        return "{\"count\":" + stats.count + ",\"failed\":" + stats.failed
+                + ",\"averageMicros\":" + stats.averageMicros + ",\"p99Micros\":" + stats.p99Micros
+                + ",\"maxMicros\":" + stats.maxMicros + "}";
+    }
+
+    private void route(String path, String method, Handler handler) {
+        server.createContext(path, exchange -> {
+            int status = 200;
+            String body;
+            try {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    throw new RequestException(405, "Use " + method);
+                }
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    throw new RequestException(404, "Not found");
+                }
+                body = handler.handle(params(exchange));
+            } catch (RequestException e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (RejectedExecutionException e) {
+                status = 503;
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                body = error(e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error serving " + exchange.getRequestURI() + ": " + e);
+                status = 500;
+                body = error(String.valueOf(e.getMessage()));
+            }
+            send(exchange, status, body);
+        });
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private int studentId(Map<String, String> params) throws RequestException {
+        int id = intParam(params, "student");
+        if (!tracker.students.containsKey(id)) {
+            throw new RequestException(404, "Student does not exist");
+        }
+        return id;
+    }
+
+    private int eventId(Map<String, String> params) throws RequestException {
+        int id = intParam(params, "event");
+        if (!tracker.events.containsKey(id)) {
+            throw new RequestException(404, "Event does not exist");
+        }
+        return id;
+    }
+
+    private static int intParam(Map<String, String> params, String name) throws RequestException {
+        String value = params.get(name);
+        if (value == null) {
+            throw new RequestException(400, "Missing parameter: " + name);
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Bad number for " + name + ": " + value);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 3) {
+            System.err.println("Usage: TrackerServer [port] [data dir] [bind address]");
+            System.exit(2);
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String dataDir = args.length > 1 ? args[1] : "data";
+        // Loopback unless told otherwise, so the tracker is not exposed to the network by accident
+        String host = args.length > 2 ? args[2] : "127.0.0.1";
+        TrackerServer server = new TrackerServer(new StudentTracker(dataDir), new InetSocketAddress(host, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+            } catch (IOException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("Serving " + dataDir + " on http://" + host + ":" + server.port());
+    }
+}